@@ -1,2 +1,2 @@
 rm src/*.class
-javac -cp src src/Othello.java
+javac -cp src src/Othello.java src/OthelloDaemon.java
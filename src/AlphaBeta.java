@@ -1,22 +1,100 @@
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Class that implements the Alpha Beta algorithm in a recursive way. It stops by throwing a OutOfTimeException when
  * reaching timeLimitStamp.
+ * The search is made on a single OthelloPosition, copied from the evaluated one, on which moves are made and undone
+ * in place, so an instance must only be used by one thread at a time.
  */
 public class AlphaBeta implements OthelloAlgorithm {
+    /**
+     * Maximum number of plies of a search: there are at most 60 empty cells, and a pass ends the search branch.
+     */
+    private static final int MAX_PLY = 64;
+
+    /**
+     * Maximum number of legal moves in a position.
+     */
+    private static final int MAX_MOVES = 64;
+
+    /**
+     * Score of a won game, without its disc differential. It is above any evaluator score.
+     */
+    static final int WIN_SCORE = 1000000;
+
+    /**
+     * The time limit is only checked every TIME_CHECK_NODES nodes, reading the clock at every node costs more than
+     * the node itself near the leaves.
+     */
+    private static final int TIME_CHECK_NODES = 1 << 10;
+
     private OthelloEvaluator evaluator;
+
+    /**
+     * Terms of the evaluator kept up to date on the searched position, if the evaluator is an IncrementalEvaluator.
+     */
+    private IncrementalEvaluation incrementalEvaluation;
     private int searchDepth;
-    private long timeLimitStamp;
+    private volatile long timeLimitStamp;
+    private int nodeCount;
+    private OthelloPosition position;
+    private TranspositionTable transpositionTable;
+    private MoveOrdering moveOrdering = new HeuristicMoveOrdering();
+    private int windowAlpha = Integer.MIN_VALUE;
+    private int windowBeta = Integer.MAX_VALUE;
+
+    /**
+     * Parameters of the selective search, or null for a full-width search.
+     */
+    private ProbCut probCut;
+
+    /**
+     * Counters of the search, or null to not count anything.
+     */
+    private SearchStatistics statistics;
+
+    /**
+     * True to search all the moves but the first of each node with a null window, see PrincipalVariationSearch.
+     */
+    private final boolean nullWindowSearch;
+
+    /**
+     * Moves of the nodes being searched, one buffer per ply so that nothing is allocated to list them.
+     */
+    private final int[][] moveBuffers = new int[MAX_PLY][MAX_MOVES];
+
+    /**
+     * Best move of the last search and hash of its root position, searched first by the next search of the same
+     * position when there is no transposition table to remember it.
+     */
+    private long rootHash;
+    private int rootBestMove = TranspositionTable.NO_MOVE;
+
+    /**
+     * Best move found at the root by the running search. The nodes only return their score, so the move of the root
+     * is kept aside.
+     */
+    private int rootMove;
 
 
     public AlphaBeta(long timeLimitStamp) {
+        this(timeLimitStamp, false);
+    }
+
+    protected AlphaBeta(long timeLimitStamp, boolean nullWindowSearch) {
         this.timeLimitStamp = timeLimitStamp;
+        this.nullWindowSearch = nullWindowSearch;
     }
 
     @Override
     public void setEvaluator(OthelloEvaluator evaluator) {
         this.evaluator = evaluator;
+        incrementalEvaluation = null;
+        if (evaluator instanceof IncrementalEvaluator) {
+            incrementalEvaluation = ((IncrementalEvaluator) evaluator).newEvaluation();
+        }
     }
 
     @Override
@@ -24,6 +102,53 @@ public class AlphaBeta implements OthelloAlgorithm {
         this.searchDepth = depth;
     }
 
+    /**
+     * Sets the statistics updated by the search, or null to stop collecting them.
+     */
+    public void setStatistics(SearchStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * Sets the time limit of the search. It can be called from another thread while searching, for instance with 0
+     * to stop the search as soon as possible.
+     */
+    public void setTimeLimitStamp(long timeLimitStamp) {
+        this.timeLimitStamp = timeLimitStamp;
+    }
+
+    @Override
+    public void setSearchWindow(int alpha, int beta) {
+        this.windowAlpha = alpha;
+        this.windowBeta = beta;
+    }
+
+    /**
+     * Sets the transposition table used to store and reuse search results. It should be kept between the searches of
+     * an iterative deepening, so that each depth benefits from the previous ones. No table is used if it is null.
+     */
+    public void setTranspositionTable(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    /**
+     * Enables the selective search with the parameters <code>probCut</code>, or disables it if it is null. Before
+     * searching the moves of a node, a shallower null window search of the node predicts whether its value is outside
+     * of [alpha,beta], in which case the node returns the crossed bound without being searched. The search is not
+     * exact anymore, but reaches deeper depths in the same time.
+     */
+    public void setProbCut(ProbCut probCut) {
+        this.probCut = probCut;
+    }
+
+    /**
+     * Sets the strategy deciding in which order the moves of a node are searched. HeuristicMoveOrdering is used by
+     * default.
+     */
+    public void setMoveOrdering(MoveOrdering moveOrdering) {
+        this.moveOrdering = moveOrdering;
+    }
+
     /**
      * Implements AlphaBeta, calling MaxValue() or MinValue() depending on which player the AI is playing.
      * @param position Starting position
@@ -33,12 +158,154 @@ public class AlphaBeta implements OthelloAlgorithm {
      */
     @Override
     public OthelloAction evaluate(OthelloPosition position) throws IllegalMoveException, OutOfTimeException {
-        int alpha = Integer.MIN_VALUE, beta = Integer.MAX_VALUE;
+        int alpha = windowAlpha, beta = windowBeta;
+        this.position = position.clone();
+        this.position.setIncrementalEvaluation(incrementalEvaluation);
+        moveOrdering.newSearch();
+        if (position.getHash() != rootHash) {
+            rootHash = position.getHash();
+            rootBestMove = TranspositionTable.NO_MOVE;
+        }
+
+        rootMove = TranspositionTable.NO_MOVE;
+        int value;
         if (position.playerToMove) {
-            return this.maxValue(position, alpha, beta, this.searchDepth);
+            value = this.maxValue(alpha, beta, this.searchDepth);
         } else {
-            return this.minValue(position, alpha, beta, this.searchDepth);
+            value = this.minValue(alpha, beta, this.searchDepth);
         }
+        if (rootMove == TranspositionTable.NO_MOVE) {
+            //blank action at depth 0, pass move if there is no move possible
+            OthelloAction bestMove = new OthelloAction(0, 0, searchDepth > 0);
+            bestMove.value = value;
+            return bestMove;
+        }
+        rootBestMove = rootMove;
+        return moveAction(rootMove, value);
+    }
+
+    /**
+     * Searches the <code>moveCount</code> best moves in a single search. The root moves are searched in order with
+     * the full window until <code>moveCount</code> of them have an exact value. Every following move is first searched
+     * with a null window at the value of the worst of the best moves, which proves cheaply that most of them are not
+     * better, and is searched again with a window open on its better side, to know its exact value, only if it is.
+     * The principal variations are read from the transposition table, so they stop at the first unknown position
+     * without table.
+     */
+    @Override
+    public List<PrincipalVariation> evaluateMultiPv(OthelloPosition position, int moveCount)
+            throws IllegalMoveException, OutOfTimeException {
+        long moveMask = position.getMoveMask();
+        if (moveMask == 0 || searchDepth == 0 || moveCount < 1) {
+            //a pass or a blank action, without variation
+            return Collections.singletonList(new PrincipalVariation(Collections.singletonList(
+                    evaluateFullWindow(position))));
+        }
+        this.position = position.clone();
+        this.position.setIncrementalEvaluation(incrementalEvaluation);
+        moveOrdering.newSearch();
+        if (position.getHash() != rootHash) {
+            rootHash = position.getHash();
+            rootBestMove = TranspositionTable.NO_MOVE;
+        }
+        if (statistics != null) {
+            statistics.nodes++;
+        }
+        boolean maximizing = position.playerToMove;
+        long hash = position.getHash();
+        int[] moves = moveBuffers[0];
+        int rootMoveCount = orderMoves(moveMask, moves, probeTranspositionTable(hash), 0);
+
+        //the best moves and their values, best first
+        int[] bestMoves = new int[Math.min(moveCount, rootMoveCount)];
+        int[] bestValues = new int[bestMoves.length];
+        int bestCount = 0;
+        for (int i = 0; i < rootMoveCount; i++) {
+            this.position.doMove(moves[i]);
+            int value;
+            if (bestCount < bestMoves.length) {
+                value = maximizing ? minValue(Integer.MIN_VALUE, Integer.MAX_VALUE, searchDepth - 1)
+                        : maxValue(Integer.MIN_VALUE, Integer.MAX_VALUE, searchDepth - 1);
+            } else {
+                int worstValue = bestValues[bestCount - 1];
+                if (maximizing) {
+                    value = minValue(worstValue, worstValue + 1, searchDepth - 1);
+                    if (value > worstValue) {
+                        value = minValue(worstValue, Integer.MAX_VALUE, searchDepth - 1);
+                    }
+                } else {
+                    value = maxValue(worstValue - 1, worstValue, searchDepth - 1);
+                    if (value < worstValue) {
+                        value = maxValue(Integer.MIN_VALUE, worstValue, searchDepth - 1);
+                    }
+                }
+            }
+            this.position.undoMove();
+
+            //insert the move among the best ones, if it is better than the worst of them
+            int index = bestCount;
+            while (index > 0 && (maximizing ? value > bestValues[index - 1] : value < bestValues[index - 1])) {
+                index--;
+            }
+            if (index < bestMoves.length) {
+                int shifted = Math.min(bestCount, bestMoves.length - 1) - index;
+                System.arraycopy(bestMoves, index, bestMoves, index + 1, shifted);
+                System.arraycopy(bestValues, index, bestValues, index + 1, shifted);
+                bestMoves[index] = moves[i];
+                bestValues[index] = value;
+                bestCount = Math.min(bestCount + 1, bestMoves.length);
+            }
+        }
+        storeTranspositionTable(hash, searchDepth, bestValues[0], Integer.MIN_VALUE, Integer.MAX_VALUE, bestMoves[0]);
+        rootBestMove = bestMoves[0];
+
+        List<PrincipalVariation> variations = new ArrayList<>(bestCount);
+        for (int i = 0; i < bestCount; i++) {
+            variations.add(principalVariation(position, bestMoves[i], bestValues[i]));
+        }
+        return variations;
+    }
+
+    /**
+     * Returns evaluate() of <code>position</code> with the full window, restoring the window of the caller after.
+     */
+    private OthelloAction evaluateFullWindow(OthelloPosition position) throws IllegalMoveException, OutOfTimeException {
+        int alpha = windowAlpha, beta = windowBeta;
+        setSearchWindow(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        try {
+            return evaluate(position);
+        } finally {
+            setSearchWindow(alpha, beta);
+        }
+    }
+
+    /**
+     * Returns the variation of the move on <code>square</code> in <code>position</code>, followed by the best moves
+     * of the transposition table until the search depth, the end of the game, or an unknown position.
+     */
+    private PrincipalVariation principalVariation(OthelloPosition position, int square, int value) {
+        List<OthelloAction> moves = new ArrayList<>();
+        moves.add(moveAction(square, value));
+        OthelloPosition variationPosition = position.clone();
+        variationPosition.doMove(square);
+        while (transpositionTable != null && moves.size() < searchDepth && !variationPosition.isGameOver()) {
+            long moveMask = variationPosition.getMoveMask();
+            if (moveMask == 0) {
+                moves.add(new OthelloAction(0, 0, true));
+                variationPosition.doMove(OthelloPosition.PASS);
+                continue;
+            }
+            long entry = transpositionTable.probe(variationPosition.getHash());
+            int move = entry != 0 ? TranspositionTable.moveOf(entry) : TranspositionTable.NO_MOVE;
+            //the entry may belong to another position of the same slot
+            if (move == TranspositionTable.NO_MOVE || (moveMask & (1L << move)) == 0) {
+                break;
+            }
+            OthelloAction action = moveAction(move, TranspositionTable.scoreOf(entry));
+            moves.add(action);
+            variationPosition.doMove(move);
+        }
+        return new PrincipalVariation(moves);
     }
 
 
@@ -47,40 +314,77 @@ public class AlphaBeta implements OthelloAlgorithm {
      * Implements Max side of AlphaBeta search.
      *
      */
-    private OthelloAction maxValue(OthelloPosition position, int alpha, int beta, int depth) throws IllegalMoveException, OutOfTimeException {
-        LinkedList<OthelloAction> moves = position.getMoves();
+    private int maxValue(int alpha, int beta, int depth) throws OutOfTimeException {
+        if (statistics != null) {
+            statistics.nodes++;
+        }
+        checkTime();
+        long moveMask = position.getMoveMask();
         //reached max depth
         if (depth == 0) {
-            return maxDepthScore(position);
+            return maxDepthScore();
         }
         //reached leaf position
-        else if (moves.isEmpty()) {
-            return leafScore(position);
+        else if (moveMask == 0) {
+            return leafScore();
         } else {
-            int value = Integer.MIN_VALUE;
+            long hash = position.getHash();
+            long entry = probeTranspositionTable(hash);
+            //a previous search of this position is enough to know its value
+            if (entry != 0 && isTranspositionCutoff(entry, depth, alpha, beta)) {
+                if (statistics != null) {
+                    statistics.tableCutoffs++;
+                }
+                return TranspositionTable.scoreOf(entry);
+            }
+            if (probCut != null && depth < searchDepth) {
+                if (isProbCutAbove(beta, depth, true)) {
+                    return beta;
+                }
+                if (isProbCutBelow(alpha, depth, true)) {
+                    return alpha;
+                }
+            }
+            int ply = searchDepth - depth;
+            int[] moves = moveBuffers[ply];
+            int moveCount = orderMoves(moveMask, moves, entry, ply);
 
-            OthelloAction bestMove = new OthelloAction(0, 0);
-            for (OthelloAction move : moves) {
-                //check time every move made
-                if (System.currentTimeMillis() > timeLimitStamp)
-                    throw new OutOfTimeException();
+            int originalAlpha = alpha;
+            int value = Integer.MIN_VALUE;
 
-                OthelloPosition next_position = position.makeMove(move);
-                OthelloAction moveResult = minValue(next_position, alpha, beta, depth - 1);
+            int bestMove = TranspositionTable.NO_MOVE;
+            for (int i = 0; i < moveCount; i++) {
+                position.doMove(moves[i]);
+                int moveValue;
+                if (i > 0 && nullWindowSearch) {
+                    //only check that the move is not better than alpha, and search it again if it is
+                    moveValue = minValue(alpha, alpha + 1, depth - 1);
+                    if (moveValue > alpha && moveValue < beta) {
+                        moveValue = minValue(alpha, beta, depth - 1);
+                    }
+                } else {
+                    moveValue = minValue(alpha, beta, depth - 1);
+                }
+                position.undoMove();
                 //replace the bestMove if this one is better
-                if (moveResult.getValue() > value) {
-                    value = moveResult.getValue();
-                    move.value = value;
-                    bestMove = move;
+                if (bestMove == TranspositionTable.NO_MOVE || moveValue > value) {
+                    value = moveValue;
+                    bestMove = moves[i];
                 }
                 //the new move is not as good as the best of this depth: cut the search
                 if (value >= beta) {
-                    return move;
+                    moveOrdering.recordCutoff(position, bestMove, ply, depth);
+                    countCutoff(i);
+                    break;
                 }
 
                 alpha = Integer.max(alpha, value);
             }
-            return bestMove;
+            storeTranspositionTable(hash, depth, value, originalAlpha, beta, bestMove);
+            if (depth == searchDepth) {
+                rootMove = bestMove;
+            }
+            return value;
         }
     }
 
@@ -88,85 +392,259 @@ public class AlphaBeta implements OthelloAlgorithm {
     /**
      * Implements Min side of AlphaBeta search.
      */
-    private OthelloAction minValue(OthelloPosition position, int alpha, int beta, int depth) throws IllegalMoveException, OutOfTimeException {
-        LinkedList<OthelloAction> moves = position.getMoves();
+    private int minValue(int alpha, int beta, int depth) throws OutOfTimeException {
+        if (statistics != null) {
+            statistics.nodes++;
+        }
+        checkTime();
+        long moveMask = position.getMoveMask();
         if (depth == 0) {
-            return maxDepthScore(position);
+            return maxDepthScore();
         }
-        else if (moves.isEmpty()) {
-            return leafScore(position);
+        else if (moveMask == 0) {
+            return leafScore();
         } else {
+            long hash = position.getHash();
+            long entry = probeTranspositionTable(hash);
+            if (entry != 0 && isTranspositionCutoff(entry, depth, alpha, beta)) {
+                if (statistics != null) {
+                    statistics.tableCutoffs++;
+                }
+                return TranspositionTable.scoreOf(entry);
+            }
+            if (probCut != null && depth < searchDepth) {
+                if (isProbCutBelow(alpha, depth, false)) {
+                    return alpha;
+                }
+                if (isProbCutAbove(beta, depth, false)) {
+                    return beta;
+                }
+            }
+            int ply = searchDepth - depth;
+            int[] moves = moveBuffers[ply];
+            int moveCount = orderMoves(moveMask, moves, entry, ply);
 
+            int originalBeta = beta;
             int value = Integer.MAX_VALUE;
 
-            OthelloAction bestMove = new OthelloAction(0, 0);
-            for (OthelloAction move : moves) {
-                if (System.currentTimeMillis() > timeLimitStamp)
-                    throw new OutOfTimeException();
-
-                OthelloPosition nextPosition = position.makeMove(move);
-                OthelloAction moveResult = maxValue(nextPosition, alpha, beta, depth - 1);
-                if (moveResult.getValue() < value) {
-                    value = moveResult.getValue();
-                    move.value = value;
-                    bestMove = move;
+            int bestMove = TranspositionTable.NO_MOVE;
+            for (int i = 0; i < moveCount; i++) {
+                position.doMove(moves[i]);
+                int moveValue;
+                if (i > 0 && nullWindowSearch) {
+                    moveValue = maxValue(beta - 1, beta, depth - 1);
+                    if (moveValue < beta && moveValue > alpha) {
+                        moveValue = maxValue(alpha, beta, depth - 1);
+                    }
+                } else {
+                    moveValue = maxValue(alpha, beta, depth - 1);
+                }
+                position.undoMove();
+                if (bestMove == TranspositionTable.NO_MOVE || moveValue < value) {
+                    value = moveValue;
+                    bestMove = moves[i];
                 }
 
                 if (value <= alpha) {
-                    move.value = value;
-                    return move;
+                    moveOrdering.recordCutoff(position, bestMove, ply, depth);
+                    countCutoff(i);
+                    break;
                 }
 
                 beta = Integer.min(beta, value);
             }
-            return bestMove;
+            storeTranspositionTable(hash, depth, value, alpha, originalBeta, bestMove);
+            if (depth == searchDepth) {
+                rootMove = bestMove;
+            }
+            return value;
         }
     }
 
     /**
-     * factorizes the code when Min or Max goes at maximum depth.
-     * @param position current position at max depth
-     * @return pass OthelloAction which value is infinity or the position score
+     * Returns whether a shallow search of the current node predicts that its value at <code>depth</code> is at least
+     * <code>beta</code>, with the confidence of the ProbCut parameters. The node is of the max side if
+     * <code>maximizing</code>.
      */
-    private OthelloAction maxDepthScore(OthelloPosition position) {
-        OthelloAction maxDepthMove = new OthelloAction(0, 0);
-        maxDepthMove.value = this.evaluator.evaluate(position);
-        return maxDepthMove;
+    private boolean isProbCutAbove(int beta, int depth, boolean maximizing) throws OutOfTimeException {
+        int empties = position.countEmpties();
+        int bound = probCut.upperBound(beta, depth, empties);
+        if (bound == Integer.MAX_VALUE) {
+            return false;
+        }
+        int shallowDepth = probCut.shallowDepth(depth, empties);
+        int value = maximizing ? maxValue(bound - 1, bound, shallowDepth) : minValue(bound - 1, bound, shallowDepth);
+        if (value >= bound) {
+            countProbCut();
+            return true;
+        }
+        return false;
     }
 
     /**
-     * Checks a leaf position to return an infinity value if the game is won. Else it evaluates normally the position.
-     * @param position leaf position without being at max depth
-     * @return pass OthelloAction which value is infinity or the position score
-     * @throws IllegalMoveException to satisfy makeMove() prototype, making a pass move just to switch player
+     * Returns whether a shallow search of the current node predicts that its value at <code>depth</code> is at most
+     * <code>alpha</code>, with the confidence of the ProbCut parameters.
      */
-    private OthelloAction leafScore(OthelloPosition position) throws IllegalMoveException {
-        OthelloAction leafScore = new OthelloAction(0,0, true);
-        //switch to the opponent turn
-        OthelloPosition evalPosition = position.makeMove(leafScore);
-        //Check if the position is an ending move
-        if (evalPosition.getMoves().isEmpty()) {
-            int whiteNumber = 0;
-            int blackNumber = 0;
-            //get the total count of each player tokens
-            for (int row = 1; row <= OthelloPosition.BOARD_SIZE; row++) {
-                for (int column = 1; column <= OthelloPosition.BOARD_SIZE; column++) {
-                    char cell = position.board[row][column];
-                    if (cell == 'W') {
-                        whiteNumber += 1;
-                    } else if (cell == 'B') {
-                        blackNumber += 1;
-                    }
-                }
+    private boolean isProbCutBelow(int alpha, int depth, boolean maximizing) throws OutOfTimeException {
+        int empties = position.countEmpties();
+        int bound = probCut.lowerBound(alpha, depth, empties);
+        if (bound == Integer.MIN_VALUE) {
+            return false;
+        }
+        int shallowDepth = probCut.shallowDepth(depth, empties);
+        int value = maximizing ? maxValue(bound, bound + 1, shallowDepth) : minValue(bound, bound + 1, shallowDepth);
+        if (value <= bound) {
+            countProbCut();
+            return true;
+        }
+        return false;
+    }
+
+    private void countProbCut() {
+        if (statistics != null) {
+            statistics.probCuts++;
+        }
+    }
+
+    /**
+     * Fills <code>moves</code> with the bit indexes of <code>moveMask</code>, sorted by the move ordering, and
+     * returns their number. The hash move is the best move of the transposition table entry, or at the root the best
+     * move of the previous search.
+     */
+    private int orderMoves(long moveMask, int[] moves, long entry, int ply) {
+        int moveCount = 0;
+        while (moveMask != 0) {
+            moves[moveCount++] = Long.numberOfTrailingZeros(moveMask);
+            moveMask &= moveMask - 1;
+        }
+        int hashMove = TranspositionTable.NO_MOVE;
+        if (entry != 0) {
+            hashMove = TranspositionTable.moveOf(entry);
+        } else if (ply == 0) {
+            hashMove = rootBestMove;
+        }
+        moveOrdering.orderMoves(position, moves, moveCount, hashMove, ply);
+        return moveCount;
+    }
+
+    /**
+     * Returns the OthelloAction of the move on the bit index <code>square</code>, with <code>value</code> as value.
+     */
+    private OthelloAction moveAction(int square, int value) {
+        OthelloAction action = new OthelloAction(OthelloPosition.squareRow(square), OthelloPosition.squareColumn(square));
+        action.value = value;
+        return action;
+    }
+
+    /**
+     * Returns the transposition table entry of the current position, or 0 if there is none or no table.
+     */
+    private long probeTranspositionTable(long hash) {
+        if (transpositionTable == null) {
+            return 0;
+        }
+        long entry = transpositionTable.probe(hash);
+        if (statistics != null) {
+            statistics.tableProbes++;
+            if (entry != 0) {
+                statistics.tableHits++;
             }
-            if (whiteNumber > blackNumber) {
-                leafScore.setValue(Integer.MAX_VALUE);//White player wins. The white score is maximal
-            } else {
-                leafScore.setValue(Integer.MIN_VALUE);//Black player wins. The black score is minimal
+        }
+        return entry;
+    }
+
+    /**
+     * Counts a cutoff caused by the move of index <code>moveIndex</code> in the ordered moves of its node.
+     */
+    private void countCutoff(int moveIndex) {
+        if (statistics != null) {
+            statistics.betaCutoffs++;
+            if (moveIndex == 0) {
+                statistics.firstMoveCutoffs++;
             }
-        } else {
-            leafScore.setValue(evaluator.evaluate(position));
         }
-        return leafScore;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns whether a transposition table entry gives the value of the current node without searching it: it must
+     * come from a search at least as deep, the node must not be the root, which has to return a move, and the score
+     * must be exact or a bound outside of [alpha,beta].
+     */
+    private boolean isTranspositionCutoff(long entry, int depth, int alpha, int beta) {
+        if (depth == searchDepth || TranspositionTable.depthOf(entry) < depth) {
+            return false;
+        }
+        int score = TranspositionTable.scoreOf(entry);
+        int bound = TranspositionTable.boundOf(entry);
+        return bound == TranspositionTable.EXACT
+                || bound == TranspositionTable.LOWER_BOUND && score >= beta
+                || bound == TranspositionTable.UPPER_BOUND && score <= alpha;
+    }
+
+    /**
+     * Stores the value of the current node in the transposition table, if there is one. Whether the value is exact or
+     * only a bound depends on the window [alpha,beta] the node was searched with.
+     */
+    private void storeTranspositionTable(long hash, int depth, int value, int alpha, int beta, int bestMove) {
+        if (transpositionTable == null) {
+            return;
+        }
+        int bound = TranspositionTable.EXACT;
+        if (value >= beta) {
+            bound = TranspositionTable.LOWER_BOUND;
+        } else if (value <= alpha) {
+            bound = TranspositionTable.UPPER_BOUND;
+        }
+        transpositionTable.store(hash, depth, bound, value, bestMove);
+    }
+
+    /**
+     * Throws an OutOfTimeException if the time limit is reached, checking the clock every TIME_CHECK_NODES nodes.
+     */
+    private void checkTime() throws OutOfTimeException {
+        if ((++nodeCount & (TIME_CHECK_NODES - 1)) == 0 && System.currentTimeMillis() > timeLimitStamp) {
+            throw new OutOfTimeException();
+        }
+    }
+
+    /**
+     * factorizes the code when Min or Max goes at maximum depth.
+     * @return the position score
+     */
+    private int maxDepthScore() {
+        if (statistics != null) {
+            statistics.leafEvaluations++;
+        }
+        return this.evaluator.evaluate(position);
+    }
+
+    /**
+     * Checks the current leaf position, without being at max depth, to return the final score if the game is over.
+     * Else it evaluates normally the position.
+     * @return the final score or the position score
+     */
+    private int leafScore() {
+        if (statistics != null) {
+            statistics.leafEvaluations++;
+        }
+        //Check if the position is an ending move
+        if (position.isGameOver()) {
+            return finalScore(position);
+        }
+        return evaluator.evaluate(position);
+    }
+
+    /**
+     * Returns the score of a finished game: WIN_SCORE plus the disc differential if white won, minus WIN_SCORE plus
+     * the disc differential if black won, so that bigger wins are preferred. The empty cells go to the winner.
+     */
+    static int finalScore(OthelloPosition position) {
+        int discDifferential = position.countDiscs(true) - position.countDiscs(false);
+        if (discDifferential > 0) {
+            return WIN_SCORE + discDifferential + position.countEmpties();//White player wins
+        } else if (discDifferential < 0) {
+            return -WIN_SCORE + discDifferential - position.countEmpties();//Black player wins
+        }
+        return 0;
+    }
+}
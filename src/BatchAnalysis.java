@@ -0,0 +1,216 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analyses all the positions of a file in parallel, for regression tests and for labelling datasets. The positions
+ * are read as a stream, from a positions file of PositionRecords or from a text file with a position string per line,
+ * and each one is searched by iterative deepening by one of the worker threads, up to a depth or during a time.
+ *
+ * A line is written per position as soon as its analysis is done: the position, the best move, its score for white,
+ * the depth of the last completed iteration and the number of nodes searched, separated by spaces. The lines are in
+ * the order of the input file, unless -unordered is given, in which case a slow position does not hold back the
+ * following ones. The number of positions per second is printed at the end.
+ *
+ * The evaluator is the one of Othello: the pattern tables if their file exists, else the BoardEvaluator with the
+ * weights file if it exists.
+ *
+ * Usage: java BatchAnalysis [-unordered] input_file output_file [depth|time_per_position_ms] [threads]
+ * For instance: java BatchAnalysis positions.bin results.txt 200ms
+ */
+public class BatchAnalysis {
+    private static final String DEFAULT_LIMIT = "8";
+    private static final int TRANSPOSITION_TABLE_MEGABYTES = 16;
+
+    /**
+     * Number of positions read in advance per thread, whose results may wait in memory to be written in order.
+     */
+    private static final int PENDING_POSITIONS_PER_THREAD = 64;
+
+    private final int depth;
+    private final long positionMilliseconds;
+    private final boolean ordered;
+    private final OthelloEvaluator evaluator;
+    private final PrintStream out;
+    private final Semaphore pendingPositions;
+
+    /**
+     * The searches of the worker threads, each thread having its own.
+     */
+    private final ThreadLocal<Analyser> analysers;
+
+    /**
+     * Results waiting for the ones of the previous positions, by position index, and the index of the next result to
+     * write.
+     */
+    private final Map<Long, String> waitingResults = new HashMap<>();
+    private long nextResult;
+    private long totalNodes;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        boolean ordered = args.length == 0 || !args[0].equals("-unordered");
+        int argumentIndex = ordered ? 0 : 1;
+        if (args.length < argumentIndex + 2) {
+            System.err.println("Usage: java BatchAnalysis [-unordered] input_file output_file "
+                    + "[depth|time_per_position_ms] [threads]");
+            System.exit(1);
+        }
+        Path input = Paths.get(args[argumentIndex]);
+        Path output = Paths.get(args[argumentIndex + 1]);
+        String limit = args.length > argumentIndex + 2 ? args[argumentIndex + 2] : DEFAULT_LIMIT;
+        int threads = args.length > argumentIndex + 3 ? Integer.parseInt(args[argumentIndex + 3])
+                : Runtime.getRuntime().availableProcessors();
+
+        OthelloEvaluator evaluator = PatternEvaluator.loadIfExists(PatternEvaluator.DEFAULT_FILE);
+        if (evaluator == null) {
+            evaluator = BoardEvaluator.loadIfExists(BoardEvaluator.DEFAULT_FILE);
+        }
+        if (evaluator == null) {
+            evaluator = new BoardEvaluator();
+        }
+
+        long startTime = System.nanoTime();
+        long positionCount;
+        try (PrintStream out = new PrintStream(Files.newOutputStream(output), false)) {
+            BatchAnalysis analysis = new BatchAnalysis(limit, ordered, evaluator, out, threads);
+            positionCount = analysis.analyse(input, threads);
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            System.out.printf("%d positions in %.1f s: %.1f positions/s, %.0f nodes/s%n", positionCount, seconds,
+                    positionCount / seconds, analysis.totalNodes / seconds);
+        }
+    }
+
+    BatchAnalysis(String limit, boolean ordered, OthelloEvaluator evaluator, PrintStream out, int threads) {
+        if (limit.endsWith("ms")) {
+            positionMilliseconds = Long.parseLong(limit.substring(0, limit.length() - 2));
+            depth = 0;
+        } else {
+            depth = Integer.parseInt(limit);
+            positionMilliseconds = 0;
+        }
+        this.ordered = ordered;
+        this.evaluator = evaluator;
+        this.out = out;
+        pendingPositions = new Semaphore(threads * PENDING_POSITIONS_PER_THREAD);
+        analysers = ThreadLocal.withInitial(Analyser::new);
+    }
+
+    /**
+     * Analyses the positions of <code>input</code> on <code>threads</code> threads and returns their number.
+     */
+    long analyse(Path input, int threads) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long positionCount = 0;
+        try {
+            if (PositionRecords.isPositionsFile(input)) {
+                try (PositionRecords.Reader reader = new PositionRecords.Reader(input)) {
+                    OthelloPosition position;
+                    while ((position = reader.readPosition()) != null) {
+                        submit(executor, positionCount++, position);
+                    }
+                }
+            } else {
+                try (BufferedReader reader = Files.newBufferedReader(input)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (!line.isEmpty()) {
+                            submit(executor, positionCount++, new OthelloPosition(line));
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        return positionCount;
+    }
+
+    /**
+     * Submits the analysis of the position of index <code>index</code>, after waiting for room in the pending
+     * positions so that the file is not read much faster than it is analysed.
+     */
+    private void submit(ExecutorService executor, long index, OthelloPosition position) throws InterruptedException {
+        pendingPositions.acquire();
+        executor.execute(() -> {
+            String result;
+            try {
+                result = analysers.get().analyse(position);
+            } catch (IllegalMoveException | RuntimeException exception) {
+                result = position + " error " + exception;
+            }
+            write(index, result);
+        });
+    }
+
+    /**
+     * Writes the result of the position of index <code>index</code>, or keeps it until the results of the previous
+     * positions are written if the order is preserved.
+     */
+    private synchronized void write(long index, String result) {
+        if (!ordered) {
+            out.println(result);
+            pendingPositions.release();
+            return;
+        }
+        waitingResults.put(index, result);
+        String nextLine;
+        while ((nextLine = waitingResults.remove(nextResult)) != null) {
+            out.println(nextLine);
+            nextResult++;
+            pendingPositions.release();
+        }
+    }
+
+    private synchronized void addNodes(long nodes) {
+        totalNodes += nodes;
+    }
+
+    /**
+     * The search of a worker thread. Its transposition table is kept from one position to the next.
+     */
+    private class Analyser {
+        private final PrincipalVariationSearch moveChooser = new PrincipalVariationSearch(Long.MAX_VALUE);
+        private final TranspositionTable transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_MEGABYTES);
+        private final SearchStatistics statistics = new SearchStatistics();
+        private final TimeManager timeManager = new TimeManager();
+
+        Analyser() {
+            moveChooser.setEvaluator(evaluator);
+            moveChooser.setTranspositionTable(transpositionTable);
+            moveChooser.setStatistics(statistics);
+        }
+
+        /**
+         * Returns the result line of <code>position</code>.
+         */
+        String analyse(OthelloPosition position) throws IllegalMoveException {
+            statistics.startMove();
+            transpositionTable.newSearch();
+            if (position.getMoveMask() == 0) {
+                return position + " pass 0 0 0";
+            }
+            int maxDepth = depth > 0 ? Math.min(depth, position.countEmpties()) : position.countEmpties();
+            long timeLimitStamp = positionMilliseconds > 0
+                    ? System.currentTimeMillis() + positionMilliseconds : Long.MAX_VALUE;
+            timeManager.setLimitStamp(timeLimitStamp);
+            moveChooser.setTimeLimitStamp(timeLimitStamp);
+            OthelloEngine.SearchResult result = OthelloEngine.iterativeDeepening(moveChooser, timeManager, position,
+                    maxDepth, statistics);
+            OthelloAction bestMove = result.move;
+            addNodes(statistics.nodes);
+            return position + " " + bestMove + " " + bestMove.getValue() + " " + result.depth + " "
+                    + statistics.nodes;
+        }
+    }
+}
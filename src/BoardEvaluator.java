@@ -1,11 +1,28 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
 /**
- * Class that implements a board evaluator. Its heuristic is based on the number of possible moves and
- * on an evaluation of crucial discs:
+ * Class that implements a board evaluator. Its heuristic is based on the number of possible moves, current and
+ * potential (see BoardFeatures), and on an evaluation of crucial discs:
  * - the corners, that are the most valuable
  * - the stable discs, that are very valuable (they can not be taken back)
  * - the C discs, that
  * - the X discs,
  * - the other discs are considered with a value of 1.
+ * All the terms are computed on the bitboards of the position, without scanning the cells.
+ *
+ * The weight of each term can be tuned by BoardEvaluatorTuner, which writes them in a binary file:
+ * - header: the ints MAGIC and FEATURE_COUNT
+ * - the int weights of the features, in the order of their indexes, in big-endian
+ * Without file, the weights are the hand-chosen scores below.
  */
 public class BoardEvaluator implements OthelloEvaluator {
     private static final int BAD_C_SCORE = -12;
@@ -13,108 +30,241 @@ public class BoardEvaluator implements OthelloEvaluator {
     private static final int STABLE_SCORE = 12;
     private static final int CORNER_SCORE = 22;
 
-    @Override
-    public int evaluate(OthelloPosition position) {
-        int boardScore = boardScore(position);
-        int playerMovesNumberScore = position.getMoves().size();
-
-        OthelloPosition opponentPosition = position.clone();
-        opponentPosition.playerToMove = false;
-        int opponentMovesNumberScore = position.getMoves().size();
-        //boardScore is white score - black score
-        // so add playerMovesNumberScore if the white player is playing, else subtract it
-        if (position.toMove())
-            return boardScore + playerMovesNumberScore - opponentMovesNumberScore;
-        else
-            return boardScore - playerMovesNumberScore + opponentMovesNumberScore;
-    }
-
-    /**
-     * returns the board score, being the difference white player score - black player score
-     */
-    private int boardScore(OthelloPosition position) {
-        int whiteScore = 0;
-        int blackScore = 0;
-        for (int row = 1; row <= OthelloPosition.BOARD_SIZE; row++) {
-            for (int column = 1; column <= OthelloPosition.BOARD_SIZE; column++) {
-                char cell = position.board[row][column];
-                if (cell == 'W') {
-                    whiteScore += calcCellScore(position, row, column);
-                } else if (cell == 'B') {
-                    blackScore += calcCellScore(position, row, column);
-                }
+    /**
+     * Indexes of the features, the terms of the evaluation: numbers of corners, stable discs, C discs, X discs and
+     * other discs, mobility and potential mobility, each white minus black.
+     */
+    static final int CORNER = 0;
+    static final int STABLE = 1;
+    static final int C_DISC = 2;
+    static final int X_DISC = 3;
+    static final int DISC = 4;
+    static final int MOBILITY = 5;
+    static final int POTENTIAL_MOBILITY = 6;
+    static final int FEATURE_COUNT = 7;
+
+    /**
+     * File read by Othello and OthelloDaemon if it exists, in the directory they are run from.
+     */
+    static final String DEFAULT_FILE = "othello.weights";
+
+    private static final int MAGIC = 0x57474854;
+
+    /**
+     * Masks of the corners, C and X cells, computed from isACDisc() and isAXDisc().
+     */
+    private static final long CORNERS = 0x8100000000000081L;
+    private static final long C_CELLS;
+    private static final long X_CELLS;
+
+    static {
+        long cCells = 0;
+        long xCells = 0;
+        for (int square = 0; square < 64; square++) {
+            int row = OthelloPosition.squareRow(square);
+            int column = OthelloPosition.squareColumn(square);
+            if (isACDisc(row, column)) {
+                cCells |= 1L << square;
+            } else if (isAXDisc(row, column)) {
+                xCells |= 1L << square;
             }
         }
+        C_CELLS = cCells;
+        X_CELLS = xCells;
+    }
 
-        return whiteScore - blackScore;
+    private final int cornerWeight;
+    private final int stableWeight;
+    private final int cDiscWeight;
+    private final int xDiscWeight;
+    private final int discWeight;
+    private final int mobilityWeight;
+    private final int potentialMobilityWeight;
+
+    /**
+     * Creates an evaluator with the hand-chosen weights.
+     */
+    public BoardEvaluator() {
+        this(defaultWeights());
     }
 
     /**
-     * returns the score of a disc depending on its properties (corner, stable, C disc, X disc)
+     * Creates an evaluator with the <code>weights</code> of the features, by feature index.
      */
-    private int calcCellScore(OthelloPosition position, int row, int column) {
+    public BoardEvaluator(int[] weights) {
+        if (weights.length != FEATURE_COUNT) {
+            throw new IllegalArgumentException(weights.length + " weights instead of " + FEATURE_COUNT);
+        }
+        cornerWeight = weights[CORNER];
+        stableWeight = weights[STABLE];
+        cDiscWeight = weights[C_DISC];
+        xDiscWeight = weights[X_DISC];
+        discWeight = weights[DISC];
+        mobilityWeight = weights[MOBILITY];
+        potentialMobilityWeight = weights[POTENTIAL_MOBILITY];
+    }
 
-        //Tokens in corners are the most valuable as they can not be captured back by the opponent
-        if (row == 1 && (column == 1 || column == OthelloPosition.BOARD_SIZE)
-                || row == OthelloPosition.BOARD_SIZE && (column == 1 || column == OthelloPosition.BOARD_SIZE)) {
-            return CORNER_SCORE;
+    /**
+     * Creates an evaluator with the weights of <code>in</code>, in the format of the class description.
+     */
+    public BoardEvaluator(InputStream in) throws IOException {
+        this(readWeights(in));
+    }
+
+    private static int[] readWeights(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != FEATURE_COUNT) {
+            throw new IOException("not a weights file of this version");
         }
-        //Checks if a token is stable, i.e it can not be captured back. This is worth a lot but not as much as a corner
-        else if (isTokenStable(position, row, column)) {
-            return STABLE_SCORE;
+        int[] weights = new int[FEATURE_COUNT];
+        for (int feature = 0; feature < FEATURE_COUNT; feature++) {
+            weights[feature] = data.readInt();
         }
-        else if (isACDisc(row, column)) {
-            return BAD_C_SCORE;
+        return weights;
+    }
+
+    /**
+     * Returns the hand-chosen weights, by feature index.
+     */
+    static int[] defaultWeights() {
+        int[] weights = new int[FEATURE_COUNT];
+        weights[CORNER] = CORNER_SCORE;
+        weights[STABLE] = STABLE_SCORE;
+        weights[C_DISC] = BAD_C_SCORE;
+        weights[X_DISC] = BAD_X_SCORE;
+        weights[DISC] = 1;
+        weights[MOBILITY] = 1;
+        weights[POTENTIAL_MOBILITY] = 1;
+        return weights;
+    }
+
+    /**
+     * Returns the evaluator of the weights file <code>fileName</code>, or null if there is no readable file.
+     */
+    static BoardEvaluator loadIfExists(String fileName) {
+        Path file = Paths.get(fileName);
+        if (!Files.isReadable(file)) {
+            return null;
         }
-        else if (isAXDisc(row, column)) {
-            return BAD_X_SCORE;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return new BoardEvaluator(in);
+        } catch (IOException exception) {
+            System.err.println("Evaluator weights not used: " + exception.getMessage());
+            return null;
         }
-        return 1;
     }
 
+    /**
+     * Returns the weights, by feature index.
+     */
+    int[] getWeights() {
+        int[] weights = new int[FEATURE_COUNT];
+        weights[CORNER] = cornerWeight;
+        weights[STABLE] = stableWeight;
+        weights[C_DISC] = cDiscWeight;
+        weights[X_DISC] = xDiscWeight;
+        weights[DISC] = discWeight;
+        weights[MOBILITY] = mobilityWeight;
+        weights[POTENTIAL_MOBILITY] = potentialMobilityWeight;
+        return weights;
+    }
 
     /**
-     * Checks if the disc at [row][column] is stable, i.e in all directions opposite to adjacent empty cells
-     * there are only player discs until the end of the board.
+     * Writes the weights to <code>out</code>, in the format of the class description.
      */
-    private boolean isTokenStable(OthelloPosition position, int row, int column) {
-        char playerDisc = position.board[row][column];
-        char opponentDisc = 'W';
+    void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(FEATURE_COUNT);
+        for (int weight : getWeights()) {
+            data.writeInt(weight);
+        }
+        data.flush();
+    }
 
-        if (playerDisc == 'W')
-            opponentDisc = 'B';
+    @Override
+    public int evaluate(OthelloPosition position) {
+        long whiteDiscs = position.whiteDiscs;
+        long blackDiscs = position.blackDiscs;
+        int boardScore = discsScore(whiteDiscs, blackDiscs) - discsScore(blackDiscs, whiteDiscs);
 
-        for (int rowDifference = -1; rowDifference <= 1; rowDifference++) {
-            for (int columnDifference = -1; columnDifference <= 1; columnDifference++) {
-                if (!(columnDifference == 0 && rowDifference == 0)) {
-                    int searchRow = row + rowDifference;
-                    int searchColumn = column + columnDifference;
-                    //look for a direction with an empty cell
-                    if (position.isInsideBoard(searchRow, searchColumn) && position.board[searchRow][searchColumn] == 'E') {
-                        int[] oppositeDirection = position.getOppositeDirection(rowDifference, columnDifference);
-                        //loop through
-                        while (position.isInsideBoard(searchRow, searchColumn) && position.board[searchRow][searchColumn] == playerDisc) {
-                            searchRow += oppositeDirection[0];
-                            searchColumn += oppositeDirection[1];
-                        }
-                        //in the opposite direction, if there is an opponent disc or an empty cell which might later on
-                        // be captured by the opponent, then this is not a stable token.
-                        if (position.isInsideBoard(searchRow, searchColumn) && position.board[searchRow][searchColumn] != playerDisc)
-                            return false;
+        //mobility and potential mobility, white minus black
+        int mobilityScore = mobilityWeight * (BoardFeatures.mobility(whiteDiscs, blackDiscs)
+                - BoardFeatures.mobility(blackDiscs, whiteDiscs))
+                + potentialMobilityWeight * (BoardFeatures.potentialMobility(whiteDiscs, blackDiscs)
+                - BoardFeatures.potentialMobility(blackDiscs, whiteDiscs));
+        return boardScore + mobilityScore;
+    }
 
-                    }
-                }
-            }
+    /**
+     * returns the score of the discs <code>player</code> depending on their properties, in this order: corner, stable,
+     * C disc, X disc, or the disc weight for the other discs.
+     */
+    private int discsScore(long player, long opponent) {
+        //Tokens in corners are the most valuable as they can not be captured back by the opponent
+        long corners = player & CORNERS;
+        //Stable tokens can not be captured back. This is worth a lot but not as much as a corner
+        long stable = BoardFeatures.stableDiscs(player, opponent) & ~CORNERS;
+        long others = player & ~corners & ~stable;
+        long cDiscs = others & C_CELLS;
+        long xDiscs = others & X_CELLS;
+        return cornerWeight * Long.bitCount(corners)
+                + stableWeight * Long.bitCount(stable)
+                + cDiscWeight * Long.bitCount(cDiscs)
+                + xDiscWeight * Long.bitCount(xDiscs)
+                + discWeight * Long.bitCount(others & ~C_CELLS & ~X_CELLS);
+    }
+
+    /**
+     * Fills <code>features</code> with the features of the position <code>whiteDiscs</code>,
+     * <code>blackDiscs</code>, by feature index: the evaluation is their sum weighted by the weights.
+     */
+    static void computeFeatures(long whiteDiscs, long blackDiscs, int[] features) {
+        Arrays.fill(features, 0);
+        addDiscFeatures(whiteDiscs, blackDiscs, 1, features);
+        addDiscFeatures(blackDiscs, whiteDiscs, -1, features);
+        features[MOBILITY] = BoardFeatures.mobility(whiteDiscs, blackDiscs)
+                - BoardFeatures.mobility(blackDiscs, whiteDiscs);
+        features[POTENTIAL_MOBILITY] = BoardFeatures.potentialMobility(whiteDiscs, blackDiscs)
+                - BoardFeatures.potentialMobility(blackDiscs, whiteDiscs);
+    }
+
+    /**
+     * Adds <code>sign</code> times the disc counts of discsScore() to <code>features</code>.
+     */
+    private static void addDiscFeatures(long player, long opponent, int sign, int[] features) {
+        long corners = player & CORNERS;
+        long stable = BoardFeatures.stableDiscs(player, opponent) & ~CORNERS;
+        long others = player & ~corners & ~stable;
+        features[CORNER] += sign * Long.bitCount(corners);
+        features[STABLE] += sign * Long.bitCount(stable);
+        features[C_DISC] += sign * Long.bitCount(others & C_CELLS);
+        features[X_DISC] += sign * Long.bitCount(others & X_CELLS);
+        features[DISC] += sign * Long.bitCount(others & ~C_CELLS & ~X_CELLS);
+    }
+
+
+    /**
+     * returns the score of a disc at [row][column] without looking at the position: the corner, C disc or X disc
+     * score, or 1 for the other cells. Used to give a static priority to moves.
+     */
+    static int staticSquareScore(int row, int column) {
+        if (row == 1 && (column == 1 || column == OthelloPosition.BOARD_SIZE)
+                || row == OthelloPosition.BOARD_SIZE && (column == 1 || column == OthelloPosition.BOARD_SIZE)) {
+            return CORNER_SCORE;
+        } else if (isACDisc(row, column)) {
+            return BAD_C_SCORE;
+        } else if (isAXDisc(row, column)) {
+            return BAD_X_SCORE;
         }
-        //the token is stable
-        return true;
+        return 1;
     }
 
 
     /**
      * returns whether if a disc is at one of the C positions.
      */
-    private boolean isACDisc(int row, int column) {
+    private static boolean isACDisc(int row, int column) {
         //top left corner
         if (row == 1 && column == 2 || row == 2 && column == 1) {
             return true;
@@ -137,7 +287,7 @@ public class BoardEvaluator implements OthelloEvaluator {
     /**
      * returns whether if a disc is at one of the X positions.
      */
-    private boolean isAXDisc(int row, int column) {
+    private static boolean isAXDisc(int row, int column) {
         //from top left to bottom right diagonal, next to corners
         return (row == column && (row == 2 || row == OthelloPosition.BOARD_SIZE - 1))
                 //from top right to bottom left diagonal, next to corners
@@ -0,0 +1,381 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tunes the weights of BoardEvaluator on self-play games, in two steps:
+ * - generate: self-play games are played from random openings on all the cores, with a fixed depth AlphaBeta search
+ *   and the EndgameSolver close to the end, and every position after the opening is written to a samples file with
+ *   the final result of its game
+ * - tune: the weights are fitted to the results by minimizing the mean squared error between the result, 1 for a
+ *   white win, 0.5 for a draw and 0 for a black win, and the sigmoid of the evaluation (Texel tuning). The scale of
+ *   the sigmoid is first fitted to the current weights, then kept, so that the tuned evaluations stay in the same
+ *   range. The gradient is computed by all the cores, each one streaming its part of the samples file, so the samples
+ *   are never all in memory.
+ * The tuned weights are written in the file read by BoardEvaluator.loadIfExists().
+ *
+ * Samples file format, in big-endian: the int SAMPLES_MAGIC, then SAMPLE_SIZE byte samples made of the long white
+ * discs, the long black discs and the byte result for white: 1, 0 or -1.
+ *
+ * Usage: java BoardEvaluatorTuner generate samples_file [games] [depth]
+ *        java BoardEvaluatorTuner tune samples_file [weights_file] [epochs]
+ */
+public class BoardEvaluatorTuner {
+    private static final int DEFAULT_GAMES = 2000;
+    private static final int DEFAULT_DEPTH = 4;
+    private static final int DEFAULT_EPOCHS = 300;
+
+    private static final int SAMPLES_MAGIC = 0x53414D50;
+    private static final int HEADER_SIZE = 4;
+    private static final int SAMPLE_SIZE = 17;
+
+    /**
+     * Number of random moves at the beginning of each game, so that the games are all different. Their positions are
+     * not sampled.
+     */
+    private static final int RANDOM_PLIES = 10;
+
+    /**
+     * Under this number of empty cells, the games are played perfectly by the EndgameSolver.
+     */
+    private static final int SOLVED_EMPTIES = 12;
+
+    private static final int TRANSPOSITION_TABLE_MEGABYTES = 4;
+
+    /**
+     * Number of samples read at once by a thread.
+     */
+    private static final int BUFFER_SAMPLES = 4096;
+
+    /**
+     * Steps of the Adam gradient descent, in weight units, and its decay rates.
+     */
+    private static final double LEARNING_RATE = 0.1;
+    private static final double FIRST_MOMENT_DECAY = 0.9;
+    private static final double SECOND_MOMENT_DECAY = 0.999;
+
+    private final ExecutorService executor;
+    private final int threads;
+
+    BoardEvaluatorTuner(int threads) {
+        this.threads = threads;
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || !args[0].equals("generate") && !args[0].equals("tune")) {
+            System.err.println("Usage: java BoardEvaluatorTuner generate samples_file [games] [depth]");
+            System.err.println("       java BoardEvaluatorTuner tune samples_file [weights_file] [epochs]");
+            System.exit(1);
+        }
+        BoardEvaluatorTuner tuner = new BoardEvaluatorTuner(Runtime.getRuntime().availableProcessors());
+        long startTime = System.currentTimeMillis();
+        try {
+            if (args[0].equals("generate")) {
+                int games = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_GAMES;
+                int depth = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_DEPTH;
+                long samples = tuner.generate(args[1], games, depth);
+                System.out.println(samples + " positions from " + games + " games in "
+                        + (System.currentTimeMillis() - startTime) / 1000 + " s");
+            } else {
+                String weightsFile = args.length > 2 ? args[2] : BoardEvaluator.DEFAULT_FILE;
+                int epochs = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_EPOCHS;
+                int[] weights = tuner.tune(Paths.get(args[1]), BoardEvaluator.defaultWeights(), epochs);
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(weightsFile))) {
+                    new BoardEvaluator(weights).write(out);
+                }
+                System.out.println("Weights " + Arrays.toString(weights) + " written to " + weightsFile + " in "
+                        + (System.currentTimeMillis() - startTime) / 1000 + " s");
+            }
+        } finally {
+            tuner.executor.shutdown();
+        }
+    }
+
+    /**
+     * Plays <code>games</code> self-play games searched to <code>depth</code>, writes their samples to
+     * <code>fileName</code> and returns the number of samples.
+     */
+    long generate(String fileName, int games, int depth) throws IOException, InterruptedException {
+        long sampleCount = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(SAMPLES_MAGIC);
+            List<Future<Integer>> results = new ArrayList<>();
+            Random random = new Random(0x7E8E1L);
+            for (int game = 0; game < games; game++) {
+                long seed = random.nextLong();
+                results.add(executor.submit(() -> playGame(new Random(seed), depth, out)));
+            }
+            for (Future<Integer> result : results) {
+                sampleCount += getResult(result);
+            }
+        }
+        return sampleCount;
+    }
+
+    /**
+     * Plays a self-play game, writes its samples to <code>out</code> at once and returns their number.
+     */
+    private static int playGame(Random random, int depth, DataOutputStream out)
+            throws IllegalMoveException, OutOfTimeException, IOException {
+        AlphaBeta moveChooser = new AlphaBeta(Long.MAX_VALUE);
+        moveChooser.setEvaluator(new BoardEvaluator());
+        moveChooser.setTranspositionTable(new TranspositionTable(TRANSPOSITION_TABLE_MEGABYTES));
+        moveChooser.setSearchDepth(depth);
+        EndgameSolver solver = new EndgameSolver(EndgameSolver.Mode.EXACT, Long.MAX_VALUE);
+
+        OthelloPosition position = new OthelloPosition();
+        position.initialize();
+        long[] whiteDiscs = new long[64];
+        long[] blackDiscs = new long[64];
+        int sampleCount = 0;
+        int ply = 0;
+        while (true) {
+            long moveMask = position.getMoveMask();
+            if (moveMask == 0) {
+                if (position.isGameOver()) {
+                    break;
+                }
+                position.doMove(OthelloPosition.PASS);
+                continue;
+            }
+            int square;
+            if (ply++ < RANDOM_PLIES) {
+                square = randomSquare(random, moveMask);
+            } else {
+                whiteDiscs[sampleCount] = position.whiteDiscs;
+                blackDiscs[sampleCount] = position.blackDiscs;
+                sampleCount++;
+                OthelloAction move = position.countEmpties() <= SOLVED_EMPTIES
+                        ? solver.evaluate(position) : moveChooser.evaluate(position);
+                if (move.isPassMove()) {
+                    square = OthelloPosition.PASS;
+                } else if (move.row == 0) {
+                    //blank action of a search at depth 0, which chooses no move
+                    square = randomSquare(random, moveMask);
+                } else {
+                    square = OthelloPosition.toSquare(move.row, move.column);
+                }
+            }
+            position.doMove(square);
+        }
+
+        int result = Integer.signum(position.countDiscs(true) - position.countDiscs(false));
+        synchronized (out) {
+            for (int sample = 0; sample < sampleCount; sample++) {
+                out.writeLong(whiteDiscs[sample]);
+                out.writeLong(blackDiscs[sample]);
+                out.writeByte(result);
+            }
+        }
+        return sampleCount;
+    }
+
+    private static int randomSquare(Random random, long moveMask) {
+        int moveIndex = random.nextInt(Long.bitCount(moveMask));
+        for (int i = 0; i < moveIndex; i++) {
+            moveMask &= moveMask - 1;
+        }
+        return Long.numberOfTrailingZeros(moveMask);
+    }
+
+    /**
+     * Returns the weights fitted to the samples of <code>file</code> in <code>epochs</code> passes, starting from
+     * <code>initialWeights</code>.
+     */
+    int[] tune(Path file, int[] initialWeights, int epochs) throws IOException, InterruptedException {
+        double scale = fitScale(file, initialWeights);
+        System.out.printf("sigmoid scale %.5f, error %.6f%n", scale, computeError(file, toDoubles(initialWeights), scale));
+
+        double[] weights = toDoubles(initialWeights);
+        double[] firstMoments = new double[weights.length];
+        double[] secondMoments = new double[weights.length];
+        for (int epoch = 1; epoch <= epochs; epoch++) {
+            double[] gradient = computeGradient(file, weights, scale);
+            for (int feature = 0; feature < weights.length; feature++) {
+                firstMoments[feature] = FIRST_MOMENT_DECAY * firstMoments[feature]
+                        + (1 - FIRST_MOMENT_DECAY) * gradient[feature];
+                secondMoments[feature] = SECOND_MOMENT_DECAY * secondMoments[feature]
+                        + (1 - SECOND_MOMENT_DECAY) * gradient[feature] * gradient[feature];
+                double firstMoment = firstMoments[feature] / (1 - Math.pow(FIRST_MOMENT_DECAY, epoch));
+                double secondMoment = secondMoments[feature] / (1 - Math.pow(SECOND_MOMENT_DECAY, epoch));
+                weights[feature] -= LEARNING_RATE * firstMoment / (Math.sqrt(secondMoment) + 1e-12);
+            }
+            if (epoch % 20 == 0 || epoch == epochs) {
+                System.out.printf("epoch %d: error %.6f, weights %s%n", epoch, computeError(file, weights, scale),
+                        Arrays.toString(weights));
+            }
+        }
+
+        int[] tunedWeights = new int[weights.length];
+        for (int feature = 0; feature < weights.length; feature++) {
+            tunedWeights[feature] = (int) Math.round(weights[feature]);
+        }
+        System.out.printf("rounded weights error %.6f%n", computeError(file, toDoubles(tunedWeights), scale));
+        return tunedWeights;
+    }
+
+    /**
+     * Returns the scale of the sigmoid that minimizes the error of <code>weights</code>, by a golden section search.
+     */
+    private double fitScale(Path file, int[] weights) throws IOException, InterruptedException {
+        double[] doubleWeights = toDoubles(weights);
+        double low = 1e-4;
+        double high = 1;
+        double ratio = (Math.sqrt(5) - 1) / 2;
+        double left = high - ratio * (high - low);
+        double right = low + ratio * (high - low);
+        double leftError = computeError(file, doubleWeights, left);
+        double rightError = computeError(file, doubleWeights, right);
+        while (high - low > 1e-5) {
+            if (leftError < rightError) {
+                high = right;
+                right = left;
+                rightError = leftError;
+                left = high - ratio * (high - low);
+                leftError = computeError(file, doubleWeights, left);
+            } else {
+                low = left;
+                left = right;
+                leftError = rightError;
+                right = low + ratio * (high - low);
+                rightError = computeError(file, doubleWeights, right);
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    private double computeError(Path file, double[] weights, double scale) throws IOException, InterruptedException {
+        return reduce(file, weights, scale, false)[0];
+    }
+
+    /**
+     * Returns the gradient of the error with respect to the weights.
+     */
+    private double[] computeGradient(Path file, double[] weights, double scale)
+            throws IOException, InterruptedException {
+        return Arrays.copyOfRange(reduce(file, weights, scale, true), 1, weights.length + 1);
+    }
+
+    /**
+     * Streams the samples of <code>file</code>, split in one range of samples per thread, and returns the mean error
+     * followed, if <code>withGradient</code>, by its gradient with respect to each weight.
+     */
+    private double[] reduce(Path file, double[] weights, double scale, boolean withGradient)
+            throws IOException, InterruptedException {
+        long sampleCount;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.getInt(0) != SAMPLES_MAGIC) {
+                throw new IOException(file + " is not a samples file");
+            }
+            sampleCount = (channel.size() - HEADER_SIZE) / SAMPLE_SIZE;
+        }
+        if (sampleCount == 0) {
+            throw new IOException(file + " has no samples");
+        }
+        List<Future<double[]>> parts = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            long first = sampleCount * thread / threads;
+            long end = sampleCount * (thread + 1) / threads;
+            parts.add(executor.submit(() -> reduceRange(file, first, end, weights, scale, withGradient)));
+        }
+        double[] total = new double[weights.length + 1];
+        for (Future<double[]> part : parts) {
+            double[] sums = getResult(part);
+            for (int i = 0; i < total.length; i++) {
+                total[i] += sums[i];
+            }
+        }
+        for (int i = 0; i < total.length; i++) {
+            total[i] /= sampleCount;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the sum of the squared errors of the samples of indexes [first,end), followed by the sums of their
+     * gradients if <code>withGradient</code>.
+     */
+    private static double[] reduceRange(Path file, long first, long end, double[] weights, double scale,
+                                        boolean withGradient) throws IOException {
+        double[] sums = new double[weights.length + 1];
+        int[] features = new int[BoardEvaluator.FEATURE_COUNT];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SAMPLES * SAMPLE_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long sample = first;
+            while (sample < end) {
+                int samples = (int) Math.min(BUFFER_SAMPLES, end - sample);
+                buffer.clear().limit(samples * SAMPLE_SIZE);
+                long offset = HEADER_SIZE + sample * SAMPLE_SIZE;
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        throw new IOException(file + " is truncated");
+                    }
+                }
+                buffer.flip();
+                for (int i = 0; i < samples; i++) {
+                    long whiteDiscs = buffer.getLong();
+                    long blackDiscs = buffer.getLong();
+                    double result = (buffer.get() + 1) / 2.0;
+                    BoardEvaluator.computeFeatures(whiteDiscs, blackDiscs, features);
+                    double evaluation = 0;
+                    for (int feature = 0; feature < features.length; feature++) {
+                        evaluation += weights[feature] * features[feature];
+                    }
+                    double prediction = 1 / (1 + Math.exp(-scale * evaluation));
+                    double error = result - prediction;
+                    sums[0] += error * error;
+                    if (withGradient) {
+                        //derivative of the squared error through the sigmoid
+                        double factor = -2 * error * prediction * (1 - prediction) * scale;
+                        for (int feature = 0; feature < features.length; feature++) {
+                            sums[feature + 1] += factor * features[feature];
+                        }
+                    }
+                }
+                sample += samples;
+            }
+        }
+        return sums;
+    }
+
+    private static double[] toDoubles(int[] weights) {
+        double[] doubles = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            doubles[i] = weights[i];
+        }
+        return doubles;
+    }
+
+    /**
+     * Returns the result of a task, rethrowing its exception.
+     */
+    private static <T> T getResult(Future<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
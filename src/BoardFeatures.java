@@ -0,0 +1,113 @@
+/**
+ * Mobility and stability features of a board, computed on the bitboards of OthelloPosition with a constant number of
+ * shifts and masks, without creating any move list:
+ * - the mobility of a player, its number of legal moves
+ * - the potential mobility of a player, the number of empty cells next to an opponent disc (the frontier of the
+ *   opponent), where moves may become possible later
+ * - the stable discs, that can never be flipped until the end of the game
+ */
+public class BoardFeatures {
+    private static final long FIRST_COLUMN = 0x0101010101010101L;
+    private static final long LAST_COLUMN = 0x8080808080808080L;
+    private static final long FIRST_ROW = 0x00000000000000FFL;
+    private static final long LAST_ROW = 0xFF00000000000000L;
+    private static final long EDGES = FIRST_COLUMN | LAST_COLUMN | FIRST_ROW | LAST_ROW;
+
+    /**
+     * Directions of OthelloPosition.DIRECTION_SHIFTS, by axis: each axis is made of two opposite directions.
+     */
+    private static final int EAST = 0;
+    private static final int SOUTH_EAST = 1;
+    private static final int SOUTH = 2;
+    private static final int SOUTH_WEST = 3;
+    private static final int WEST = 4;
+    private static final int NORTH_WEST = 5;
+    private static final int NORTH = 6;
+    private static final int NORTH_EAST = 7;
+
+    /**
+     * Cells of each line of the board, by axis: rows, columns, diagonals going down to the right and diagonals going
+     * down to the left.
+     */
+    private static final long[] ROWS = new long[8];
+    private static final long[] COLUMNS = new long[8];
+    private static final long[] DIAGONALS = new long[15];
+    private static final long[] ANTI_DIAGONALS = new long[15];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            int row = square >>> 3;
+            int column = square & 7;
+            ROWS[row] |= 1L << square;
+            COLUMNS[column] |= 1L << square;
+            DIAGONALS[column - row + 7] |= 1L << square;
+            ANTI_DIAGONALS[column + row] |= 1L << square;
+        }
+    }
+
+    /**
+     * Returns the number of legal moves of the player owning <code>player</code> against <code>opponent</code>.
+     */
+    static int mobility(long player, long opponent) {
+        return Long.bitCount(OthelloPosition.computeMoveMask(player, opponent));
+    }
+
+    /**
+     * Returns the number of empty cells next to a disc of <code>opponent</code>, i.e. the cells where the player may
+     * be able to move later.
+     */
+    static int potentialMobility(long player, long opponent) {
+        long empty = ~(player | opponent);
+        long neighbours = 0;
+        for (int direction = EAST; direction <= NORTH_EAST; direction++) {
+            neighbours |= OthelloPosition.shift(opponent, direction);
+        }
+        return Long.bitCount(neighbours & empty);
+    }
+
+    /**
+     * Returns the stable discs of <code>player</code>, the ones that can not be flipped anymore. A disc is stable if,
+     * on each of the 4 axes, it can not be flanked: its line on this axis is full, or one of its two neighbours on
+     * this axis is outside of the board or a stable disc of the same player. Stable discs are found from the corners
+     * by propagation until no disc is added.
+     *
+     * A disc found is always stable. Discs only stable thanks to stable discs of the opponent are not found.
+     */
+    static long stableDiscs(long player, long opponent) {
+        long occupied = player | opponent;
+        long fullRows = fullLines(occupied, ROWS);
+        long fullColumns = fullLines(occupied, COLUMNS);
+        long fullDiagonals = fullLines(occupied, DIAGONALS);
+        long fullAntiDiagonals = fullLines(occupied, ANTI_DIAGONALS);
+
+        long stable = 0;
+        while (true) {
+            long horizontal = fullRows | FIRST_COLUMN | LAST_COLUMN
+                    | OthelloPosition.shift(stable, EAST) | OthelloPosition.shift(stable, WEST);
+            long vertical = fullColumns | FIRST_ROW | LAST_ROW
+                    | OthelloPosition.shift(stable, SOUTH) | OthelloPosition.shift(stable, NORTH);
+            long diagonal = fullDiagonals | EDGES
+                    | OthelloPosition.shift(stable, SOUTH_EAST) | OthelloPosition.shift(stable, NORTH_WEST);
+            long antiDiagonal = fullAntiDiagonals | EDGES
+                    | OthelloPosition.shift(stable, SOUTH_WEST) | OthelloPosition.shift(stable, NORTH_EAST);
+            long newStable = player & horizontal & vertical & diagonal & antiDiagonal;
+            if (newStable == stable) {
+                return stable;
+            }
+            stable = newStable;
+        }
+    }
+
+    /**
+     * Returns the cells of the lines of <code>lines</code> that have no empty cell.
+     */
+    private static long fullLines(long occupied, long[] lines) {
+        long full = 0;
+        for (long line : lines) {
+            if ((occupied & line) == line) {
+                full |= line;
+            }
+        }
+        return full;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * The 8 symmetries of the board (rotations and reflections) applied to bitboards and squares, with the same bit
+ * numbering as OthelloPosition: bit (row - 1) * 8 + (column - 1).
+ *
+ * A symmetry is a number from 0 to 7 that combines, in this order, a reflection on the main diagonal (4), a reflection
+ * of the rows (2) and a reflection of the columns (1). The symmetry 0 is the identity.
+ */
+public class BoardSymmetry {
+    static final int IDENTITY = 0;
+    static final int SYMMETRY_COUNT = 8;
+
+    private static final int MIRROR_COLUMNS = 1;
+    private static final int FLIP_ROWS = 2;
+    private static final int TRANSPOSE = 4;
+
+    /**
+     * Returns <code>bits</code> with the rows in reverse order.
+     */
+    static long flipRows(long bits) {
+        return Long.reverseBytes(bits);
+    }
+
+    /**
+     * Returns <code>bits</code> with the columns in reverse order.
+     */
+    static long mirrorColumns(long bits) {
+        bits = ((bits >>> 1) & 0x5555555555555555L) | ((bits & 0x5555555555555555L) << 1);
+        bits = ((bits >>> 2) & 0x3333333333333333L) | ((bits & 0x3333333333333333L) << 2);
+        return ((bits >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((bits & 0x0F0F0F0F0F0F0F0FL) << 4);
+    }
+
+    /**
+     * Returns <code>bits</code> reflected on the diagonal going from the upper left corner to the lower right one: the
+     * rows become columns.
+     */
+    static long transpose(long bits) {
+        long swapped = 0x0F0F0F0F00000000L & (bits ^ (bits << 28));
+        bits ^= swapped ^ (swapped >>> 28);
+        swapped = 0x3333000033330000L & (bits ^ (bits << 14));
+        bits ^= swapped ^ (swapped >>> 14);
+        swapped = 0x5500550055005500L & (bits ^ (bits << 7));
+        return bits ^ swapped ^ (swapped >>> 7);
+    }
+
+    /**
+     * Returns <code>bits</code> transformed by <code>symmetry</code>.
+     */
+    static long transform(long bits, int symmetry) {
+        if ((symmetry & TRANSPOSE) != 0) {
+            bits = transpose(bits);
+        }
+        if ((symmetry & FLIP_ROWS) != 0) {
+            bits = flipRows(bits);
+        }
+        if ((symmetry & MIRROR_COLUMNS) != 0) {
+            bits = mirrorColumns(bits);
+        }
+        return bits;
+    }
+
+    /**
+     * Returns the bit index of <code>square</code> transformed by <code>symmetry</code>, or <code>square</code> itself
+     * if it is OthelloPosition.PASS.
+     */
+    static int transformSquare(int square, int symmetry) {
+        if (square < 0) {
+            return square;
+        }
+        int row = square >>> 3;
+        int column = square & 7;
+        if ((symmetry & TRANSPOSE) != 0) {
+            int swappedRow = row;
+            row = column;
+            column = swappedRow;
+        }
+        if ((symmetry & FLIP_ROWS) != 0) {
+            row = 7 - row;
+        }
+        if ((symmetry & MIRROR_COLUMNS) != 0) {
+            column = 7 - column;
+        }
+        return (row << 3) | column;
+    }
+
+    /**
+     * Returns the symmetry that cancels <code>symmetry</code>. After a transposition, reflecting the rows is the same
+     * as reflecting the columns before it, so the two reflections are swapped.
+     */
+    static int inverse(int symmetry) {
+        if ((symmetry & TRANSPOSE) == 0) {
+            return symmetry;
+        }
+        return TRANSPOSE | ((symmetry & MIRROR_COLUMNS) << 1) | ((symmetry & FLIP_ROWS) >>> 1);
+    }
+
+    /**
+     * Returns the symmetry that transforms the position made of the discs <code>player</code> and
+     * <code>opponent</code> into its canonical form: the smallest pair of transformed bitboards, compared as unsigned
+     * numbers. All the symmetric positions have the same canonical form.
+     *
+     * The 8 transforms of <code>player</code> are derived from each other, so that they only cost a transposition and
+     * two column reflections, row reflections being a single byte swap. The ones of <code>opponent</code> are only
+     * needed on ties.
+     */
+    static int canonicalSymmetry(long player, long opponent) {
+        int bestSymmetry = IDENTITY;
+        long bestPlayer = player;
+        long bestOpponent = opponent;
+        for (int transposition = 0; transposition <= TRANSPOSE; transposition += TRANSPOSE) {
+            long transposedPlayer = transposition == 0 ? player : transpose(player);
+            long mirroredPlayer = mirrorColumns(transposedPlayer);
+            for (int reflections = 0; reflections < TRANSPOSE; reflections++) {
+                int symmetry = transposition | reflections;
+                if (symmetry == IDENTITY) {
+                    continue;
+                }
+                long transformedPlayer = (reflections & MIRROR_COLUMNS) != 0 ? mirroredPlayer : transposedPlayer;
+                if ((reflections & FLIP_ROWS) != 0) {
+                    transformedPlayer = flipRows(transformedPlayer);
+                }
+                int comparison = Long.compareUnsigned(transformedPlayer, bestPlayer);
+                if (comparison > 0) {
+                    continue;
+                }
+                long transformedOpponent = transform(opponent, symmetry);
+                if (comparison < 0 || Long.compareUnsigned(transformedOpponent, bestOpponent) < 0) {
+                    bestSymmetry = symmetry;
+                    bestPlayer = transformedPlayer;
+                    bestOpponent = transformedOpponent;
+                }
+            }
+        }
+        return bestSymmetry;
+    }
+
+    /**
+     * Returns a hash of the canonical form of the position made of the discs <code>player</code> and
+     * <code>opponent</code>, the same for all the symmetric positions. It does not depend on the color of the player
+     * to move, so what is stored under it must be from the point of view of the player to move.
+     */
+    static long canonicalHash(long player, long opponent) {
+        int symmetry = canonicalSymmetry(player, opponent);
+        long hash = transform(player, symmetry) * 0x9E3779B97F4A7C15L
+                ^ transform(opponent, symmetry) * 0xC2B2AE3D27D4EB4FL;
+        //mixes the bits so that the low ones, used as table indexes, depend on the whole board
+        hash = (hash ^ (hash >>> 31)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,382 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class that solves endgame positions perfectly, by searching until the end of the game instead of using an
+ * evaluator. It works directly on the bitboards of OthelloPosition with a negamax AlphaBeta: scores are disc
+ * differentials from the point of view of the player to move, the empty cells going to the winner.
+ *
+ * Moves are ordered by parity, i.e. moves in the quadrants with an odd number of empty cells first since the player
+ * playing last in a region usually wins it, and, far enough from the end, by fastest-first, i.e. the moves leaving
+ * the opponent the fewest replies first. The last 3 empty cells are solved by dedicated methods without move lists.
+ *
+ * The value of the returned OthelloAction is given from the white point of view, like AlphaBeta values: the final
+ * disc differential in EXACT mode, or only its sign (1 win, 0 draw, -1 loss for white) in WIN_LOSS_DRAW mode.
+ */
+public class EndgameSolver implements OthelloAlgorithm {
+    /**
+     * WIN_LOSS_DRAW only finds if the position is won, which is faster to search than the exact score given by EXACT.
+     */
+    public enum Mode {
+        WIN_LOSS_DRAW,
+        EXACT
+    }
+
+    /**
+     * Score above any disc differential.
+     */
+    private static final int INFINITE_SCORE = 65;
+
+    /**
+     * Above this number of empty cells, moves are sorted by fastest-first, which is too expensive closer to the end.
+     */
+    private static final int FASTEST_FIRST_EMPTIES = 7;
+
+    /**
+     * The time limit is only checked every TIME_CHECK_NODES nodes as the nodes are very cheap.
+     */
+    private static final int TIME_CHECK_NODES = 1 << 12;
+
+    /**
+     * Masks of the 4 quadrants of the board, the regions used for parity.
+     */
+    private static final long[] QUADRANTS = {0x000000000F0F0F0FL, 0x00000000F0F0F0F0L,
+            0x0F0F0F0F00000000L, 0xF0F0F0F000000000L};
+
+    private final Mode mode;
+    private volatile long timeLimitStamp;
+    private int windowAlpha = Integer.MIN_VALUE;
+    private int windowBeta = Integer.MAX_VALUE;
+    private long nodeCount;
+
+    /**
+     * Moves and their sorting keys, one buffer per number of empty cells.
+     */
+    private final int[][] moveBuffers = new int[65][32];
+    private final int[][] keyBuffers = new int[65][32];
+
+    /**
+     * Empty cells sorted by parity in solveLastThree(), which is never called recursively while they are needed.
+     */
+    private final int[] lastThreeSquares = new int[3];
+
+    public EndgameSolver(Mode mode, long timeLimitStamp) {
+        this.mode = mode;
+        this.timeLimitStamp = timeLimitStamp;
+    }
+
+    /**
+     * The solver does not need an evaluator, the positions are searched until the end of the game.
+     */
+    @Override
+    public void setEvaluator(OthelloEvaluator evaluator) {
+    }
+
+    /**
+     * The solver always searches until the end of the game, so the depth is ignored.
+     */
+    @Override
+    public void setSearchDepth(int depth) {
+    }
+
+    /**
+     * Sets the window, from the white point of view, of the EXACT mode. The WIN_LOSS_DRAW mode always uses [-1,1].
+     */
+    @Override
+    public void setSearchWindow(int alpha, int beta) {
+        this.windowAlpha = alpha;
+        this.windowBeta = beta;
+    }
+
+    public void setTimeLimitStamp(long timeLimitStamp) {
+        this.timeLimitStamp = timeLimitStamp;
+    }
+
+    /**
+     * Returns the number of nodes searched since the solver was created.
+     */
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Only returns the best move, with the full window, see OthelloAlgorithm.evaluateMultiPv(). The window of the
+     * caller is restored after.
+     */
+    @Override
+    public List<PrincipalVariation> evaluateMultiPv(OthelloPosition position, int moveCount)
+            throws OutOfTimeException {
+        int alpha = windowAlpha, beta = windowBeta;
+        setSearchWindow(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        try {
+            return Collections.singletonList(new PrincipalVariation(Collections.singletonList(evaluate(position))));
+        } finally {
+            setSearchWindow(alpha, beta);
+        }
+    }
+
+    @Override
+    public OthelloAction evaluate(OthelloPosition position) throws OutOfTimeException {
+        long player = position.getPlayerDiscs();
+        long opponent = position.getOpponentDiscs();
+        int empties = position.countEmpties();
+
+        int alpha = Math.max(-INFINITE_SCORE, Math.min(INFINITE_SCORE, windowAlpha));
+        int beta = Math.max(-INFINITE_SCORE, Math.min(INFINITE_SCORE, windowBeta));
+        if (mode == Mode.WIN_LOSS_DRAW) {
+            alpha = -1;
+            beta = 1;
+        } else if (!position.toMove()) {
+            int whiteAlpha = alpha;
+            alpha = -beta;
+            beta = -whiteAlpha;
+        }
+
+        long moveMask = OthelloPosition.computeMoveMask(player, opponent);
+        OthelloAction bestAction;
+        if (moveMask == 0) {
+            //nothing to choose: the value is the one of the position after the pass
+            bestAction = new OthelloAction(0, 0, true);
+            bestAction.value = solve(player, opponent, alpha, beta, empties, false);
+        } else {
+            int[] moves = moveBuffers[empties];
+            int moveCount = orderMoves(player, opponent, moveMask, empties, moves);
+            int bestScore = -INFINITE_SCORE;
+            int bestMove = moves[0];
+            for (int i = 0; i < moveCount; i++) {
+                int square = moves[i];
+                long flips = OthelloPosition.computeFlips(square, player, opponent);
+                int score = -solve(opponent & ~flips, player | flips | (1L << square), -beta, -alpha,
+                        empties - 1, false);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestMove = square;
+                }
+                if (bestScore >= beta) {
+                    break;
+                }
+                alpha = Math.max(alpha, bestScore);
+            }
+            bestAction = new OthelloAction(OthelloPosition.squareRow(bestMove), OthelloPosition.squareColumn(bestMove));
+            bestAction.value = bestScore;
+        }
+
+        if (mode == Mode.WIN_LOSS_DRAW) {
+            bestAction.value = Integer.signum(bestAction.value);
+        }
+        //scores are from the point of view of the player to move
+        if (!position.toMove()) {
+            bestAction.value = -bestAction.value;
+        }
+        return bestAction;
+    }
+
+    /**
+     * Returns the score of the position for <code>player</code>, who has the move, searched with the window
+     * [alpha,beta]. <code>passed</code> is true if the opponent just passed.
+     */
+    private int solve(long player, long opponent, int alpha, int beta, int empties, boolean passed)
+            throws OutOfTimeException {
+        if ((++nodeCount & (TIME_CHECK_NODES - 1)) == 0 && System.currentTimeMillis() > timeLimitStamp) {
+            throw new OutOfTimeException();
+        }
+
+        long emptyMask = ~(player | opponent);
+        switch (empties) {
+            case 0:
+                return finalScore(player, opponent, 0);
+            case 1:
+                return solveLastOne(player, opponent, Long.numberOfTrailingZeros(emptyMask));
+            case 2: {
+                int first = Long.numberOfTrailingZeros(emptyMask);
+                int second = Long.numberOfTrailingZeros(emptyMask & (emptyMask - 1));
+                return solveLastTwo(player, opponent, alpha, beta, first, second, false);
+            }
+            case 3:
+                return solveLastThree(player, opponent, alpha, beta, emptyMask, false);
+            default:
+                break;
+        }
+
+        long moveMask = OthelloPosition.computeMoveMask(player, opponent);
+        if (moveMask == 0) {
+            if (passed) {
+                return finalScore(player, opponent, empties);
+            }
+            return -solve(opponent, player, -beta, -alpha, empties, true);
+        }
+
+        int[] moves = moveBuffers[empties];
+        int moveCount = orderMoves(player, opponent, moveMask, empties, moves);
+        int bestScore = -INFINITE_SCORE;
+        for (int i = 0; i < moveCount; i++) {
+            int square = moves[i];
+            long flips = OthelloPosition.computeFlips(square, player, opponent);
+            int score = -solve(opponent & ~flips, player | flips | (1L << square), -beta, -alpha, empties - 1, false);
+            if (score > bestScore) {
+                bestScore = score;
+                if (score >= beta) {
+                    break;
+                }
+                alpha = Math.max(alpha, score);
+            }
+        }
+        return bestScore;
+    }
+
+    /**
+     * Fills <code>moves</code> with the moves of <code>moveMask</code>, moves in odd regions first, and sorted by
+     * increasing opponent mobility when there are more than FASTEST_FIRST_EMPTIES empty cells. Returns their number.
+     */
+    private int orderMoves(long player, long opponent, long moveMask, int empties, int[] moves) {
+        long oddRegions = oddRegions(~(player | opponent));
+        int[] keys = keyBuffers[empties];
+        int moveCount = 0;
+        while (moveMask != 0) {
+            int square = Long.numberOfTrailingZeros(moveMask);
+            moveMask &= moveMask - 1;
+            long moveBit = 1L << square;
+
+            int key = (oddRegions & moveBit) != 0 ? 0 : 1;
+            if (empties > FASTEST_FIRST_EMPTIES) {
+                long flips = OthelloPosition.computeFlips(square, player, opponent);
+                long opponentMoves = OthelloPosition.computeMoveMask(opponent & ~flips, player | flips | moveBit);
+                key += Long.bitCount(opponentMoves) << 1;
+            }
+
+            //insertion sort by increasing key
+            int j = moveCount - 1;
+            while (j >= 0 && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                moves[j + 1] = moves[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            moves[j + 1] = square;
+            moveCount++;
+        }
+        return moveCount;
+    }
+
+    /**
+     * Returns the union of the quadrants that have an odd number of empty cells.
+     */
+    private static long oddRegions(long emptyMask) {
+        long oddRegions = 0;
+        for (long quadrant : QUADRANTS) {
+            if ((Long.bitCount(emptyMask & quadrant) & 1) != 0) {
+                oddRegions |= quadrant;
+            }
+        }
+        return oddRegions;
+    }
+
+    /**
+     * Returns the score of a finished game for <code>player</code>, the empty cells going to the winner.
+     */
+    private static int finalScore(long player, long opponent, int empties) {
+        int score = Long.bitCount(player) - Long.bitCount(opponent);
+        if (score > 0) {
+            return score + empties;
+        } else if (score < 0) {
+            return score - empties;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the score for <code>player</code> of a position where <code>square</code> is the last empty cell.
+     */
+    private int solveLastOne(long player, long opponent, int square) {
+        nodeCount++;
+        int playerDiscs = Long.bitCount(player);
+        long flips = OthelloPosition.computeFlips(square, player, opponent);
+        if (flips != 0) {
+            return 2 * (playerDiscs + 1 + Long.bitCount(flips)) - 64;
+        }
+        //the player passes
+        int opponentDiscs = 63 - playerDiscs;
+        flips = OthelloPosition.computeFlips(square, opponent, player);
+        if (flips != 0) {
+            return 64 - 2 * (opponentDiscs + 1 + Long.bitCount(flips));
+        }
+        //nobody can play on the last cell
+        return finalScore(player, opponent, 1);
+    }
+
+    /**
+     * Returns the score for <code>player</code> of a position where <code>first</code> and <code>second</code> are
+     * the last empty cells.
+     */
+    private int solveLastTwo(long player, long opponent, int alpha, int beta, int first, int second, boolean passed) {
+        nodeCount++;
+        int bestScore = -INFINITE_SCORE;
+        long flips = OthelloPosition.computeFlips(first, player, opponent);
+        if (flips != 0) {
+            bestScore = -solveLastOne(opponent & ~flips, player | flips | (1L << first), second);
+            if (bestScore >= beta) {
+                return bestScore;
+            }
+        }
+        flips = OthelloPosition.computeFlips(second, player, opponent);
+        if (flips != 0) {
+            bestScore = Math.max(bestScore, -solveLastOne(opponent & ~flips, player | flips | (1L << second), first));
+        }
+
+        if (bestScore == -INFINITE_SCORE) {
+            if (passed) {
+                return finalScore(player, opponent, 2);
+            }
+            return -solveLastTwo(opponent, player, -beta, -alpha, first, second, true);
+        }
+        return bestScore;
+    }
+
+    /**
+     * Returns the score for <code>player</code> of a position with the 3 empty cells of <code>emptyMask</code>. The
+     * cell alone in its quadrant, if any, is played first.
+     */
+    private int solveLastThree(long player, long opponent, int alpha, int beta, long emptyMask, boolean passed) {
+        nodeCount++;
+        int[] squares = lastThreeSquares;
+        long oddRegions = oddRegions(emptyMask);
+        int oddCount = 0;
+        int evenCount = 2;
+        //with 3 empty cells, either one or three of them are in odd quadrants
+        for (long remaining = emptyMask; remaining != 0; remaining &= remaining - 1) {
+            int square = Long.numberOfTrailingZeros(remaining);
+            if ((oddRegions & (1L << square)) != 0) {
+                squares[oddCount++] = square;
+            } else {
+                squares[evenCount--] = square;
+            }
+        }
+
+        int bestScore = -INFINITE_SCORE;
+        for (int i = 0; i < 3; i++) {
+            int square = squares[i];
+            long flips = OthelloPosition.computeFlips(square, player, opponent);
+            if (flips != 0) {
+                int first = squares[i == 0 ? 1 : 0];
+                int second = squares[i == 2 ? 1 : 2];
+                int score = -solveLastTwo(opponent & ~flips, player | flips | (1L << square), -beta, -alpha,
+                        first, second, false);
+                if (score > bestScore) {
+                    bestScore = score;
+                    if (score >= beta) {
+                        return bestScore;
+                    }
+                    alpha = Math.max(alpha, score);
+                }
+            }
+        }
+
+        if (bestScore == -INFINITE_SCORE) {
+            if (passed) {
+                return finalScore(player, opponent, 3);
+            }
+            return -solveLastThree(opponent, player, -beta, -alpha, emptyMask, true);
+        }
+        return bestScore;
+    }
+}
@@ -5,16 +5,29 @@ public class FixedDepthOthello {
         String positionString = args[0];
         OthelloPosition position = new OthelloPosition(positionString);
         position.illustrate();
-        OthelloAlgorithm moveChooser = new AlphaBeta(timeLimitStamp);
+        //"pvs" as second argument to compare the Principal Variation Search to the plain AlphaBeta
+        AlphaBeta moveChooser;
+        if (args.length > 1 && args[1].equals("pvs")) {
+            moveChooser = new PrincipalVariationSearch(timeLimitStamp);
+        } else {
+            moveChooser = new AlphaBeta(timeLimitStamp);
+        }
         OthelloEvaluator evaluator = new BoardEvaluator();
         moveChooser.setEvaluator(evaluator);
+        moveChooser.setTranspositionTable(new TranspositionTable(32));
+        //statistics of each depth, printed on the standard error
+        SearchStatistics statistics = new SearchStatistics();
+        moveChooser.setStatistics(statistics);
         OthelloAction chosenMove = new OthelloAction(0, 0);
 
+        //a single move for all the depths, so that the branching factors and times are measured from one to the next
+        statistics.startMove();
         try {
             for (int depth = 1; depth < 10 && !position.isGameEnded(chosenMove); depth++) {
                 moveChooser.setSearchDepth(depth);
-
                 chosenMove = moveChooser.evaluate(position);
+                statistics.endIteration(depth, true);
+                statistics.report(System.err, position, chosenMove);
                 System.out.println("depth = " + depth + " time = " + (System.currentTimeMillis() / 1000 - start));
                 chosenMove.pprint();
             }
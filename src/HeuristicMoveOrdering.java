@@ -0,0 +1,89 @@
+/**
+ * Move ordering that searches first the hash move, then the killer moves of the ply, i.e. the last moves that caused
+ * a cutoff at the same distance from the root, then the other moves by history score, i.e. how often and how deep
+ * they caused cutoffs for the same player, and finally by static square priority.
+ */
+public class HeuristicMoveOrdering extends StaticMoveOrdering {
+    private static final int MAX_PLY = 64;
+    private static final int KILLERS_PER_PLY = 2;
+
+    /**
+     * Key of the first killer move, below the hash move key and above any history key.
+     */
+    private static final int KILLER_KEY = 1 << 30;
+
+    /**
+     * History scores are halved when one of them goes above this limit, so that the history key stays below the
+     * killer key and recent cutoffs weigh more than old ones.
+     */
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    /**
+     * The square priority is added to the history score shifted by this amount, so that it only breaks ties.
+     */
+    private static final int HISTORY_SHIFT = 8;
+    private static final int PRIORITY_OFFSET = 128;
+
+    private final int[][] killers = new int[MAX_PLY][KILLERS_PER_PLY];
+
+    /**
+     * History scores indexed by player (0 for white, 1 for black) and square.
+     */
+    private final int[][] history = new int[2][64];
+
+    public HeuristicMoveOrdering() {
+        for (int[] plyKillers : killers) {
+            for (int i = 0; i < KILLERS_PER_PLY; i++) {
+                plyKillers[i] = TranspositionTable.NO_MOVE;
+            }
+        }
+    }
+
+    /**
+     * Ages the history so that the statistics of the current search weigh more than those of the previous ones.
+     */
+    @Override
+    public void newSearch() {
+        ageHistory();
+    }
+
+    @Override
+    protected int moveKey(OthelloPosition position, int move, int ply) {
+        if (ply < MAX_PLY) {
+            for (int i = 0; i < KILLERS_PER_PLY; i++) {
+                if (killers[ply][i] == move) {
+                    return KILLER_KEY - i;
+                }
+            }
+        }
+        int playerIndex = position.toMove() ? 0 : 1;
+        return (history[playerIndex][move] << HISTORY_SHIFT) + SQUARE_PRIORITIES[move] + PRIORITY_OFFSET;
+    }
+
+    @Override
+    public void recordCutoff(OthelloPosition position, int move, int ply, int depth) {
+        if (ply < MAX_PLY && killers[ply][0] != move) {
+            for (int i = KILLERS_PER_PLY - 1; i > 0; i--) {
+                killers[ply][i] = killers[ply][i - 1];
+            }
+            killers[ply][0] = move;
+        }
+
+        int playerIndex = position.toMove() ? 0 : 1;
+        history[playerIndex][move] += depth * depth;
+        if (history[playerIndex][move] > HISTORY_LIMIT) {
+            ageHistory();
+        }
+    }
+
+    /**
+     * Halves all the history scores.
+     */
+    private void ageHistory() {
+        for (int[] playerHistory : history) {
+            for (int square = 0; square < 64; square++) {
+                playerHistory[square] >>= 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/**
+ * This interface defines the terms of an evaluation that are kept up to date while moves are made and undone in
+ * place on an OthelloPosition (see OthelloPosition.setIncrementalEvaluation()), so that evaluating a position costs
+ * about the number of discs changed by the last move instead of a scan of the whole board.
+ *
+ * An instance is created by an IncrementalEvaluator and is attached to a single position at a time.
+ */
+public interface IncrementalEvaluation {
+
+	/**
+	 * Computes all the terms from scratch for the board made of <code>whiteDiscs</code> and <code>blackDiscs</code>.
+	 */
+	public void reset(long whiteDiscs, long blackDiscs);
+
+	/**
+	 * Updates the terms after a disc of white (if <code>white</code>) or black has been placed on the bit index
+	 * <code>square</code> and has flipped the discs <code>flips</code>.
+	 */
+	public void play(int square, long flips, boolean white);
+
+	/**
+	 * Reverts the update of play(square, flips, white).
+	 */
+	public void undo(int square, long flips, boolean white);
+}
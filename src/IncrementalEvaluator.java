@@ -0,0 +1,11 @@
+/**
+ * This interface defines an evaluator able to evaluate a position from an IncrementalEvaluation attached to it,
+ * instead of scanning the board. Without attached evaluation, evaluate() must still work from the board alone.
+ */
+public interface IncrementalEvaluator extends OthelloEvaluator {
+
+	/**
+	 * Returns a new evaluation, not attached to any position, holding the terms needed by this evaluator.
+	 */
+	public IncrementalEvaluation newEvaluation();
+}
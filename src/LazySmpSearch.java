@@ -0,0 +1,195 @@
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+
+/**
+ * Class that implements a parallel AlphaBeta with the Lazy SMP scheme: every thread runs its own AlphaBeta on the
+ * same position, and they only cooperate through a shared transposition table. The calling thread makes the search
+ * at the requested depth and gives the result. The helper threads search at the same depth or one ply deeper, and
+ * keep deepening until the calling thread is done, filling the table with results that cut the calling thread search.
+ *
+ * The time limit behaves as for AlphaBeta: evaluate() throws an OutOfTimeException when it is reached. The evaluator
+ * is shared by all the threads, so it must be thread-safe.
+ */
+public class LazySmpSearch implements OthelloAlgorithm {
+    private final AlphaBeta[] searchers;
+    private final ExecutorService helperThreads;
+    private final Future<?>[] helperResults;
+    private volatile long timeLimitStamp;
+    private int searchDepth;
+
+    /**
+     * Creates a search using <code>threadNumber</code> threads, the calling one included, each one searching with a
+     * PrincipalVariationSearch.
+     */
+    public LazySmpSearch(int threadNumber, long timeLimitStamp) {
+        this(threadNumber, PrincipalVariationSearch::new, timeLimitStamp);
+    }
+
+    /**
+     * Creates a search using <code>threadNumber</code> threads, the calling one included, each one searching with the
+     * AlphaBeta created by <code>searcherFactory</code> from the time limit, for instance PrincipalVariationSearch::new.
+     */
+    public LazySmpSearch(int threadNumber, LongFunction<AlphaBeta> searcherFactory, long timeLimitStamp) {
+        this.timeLimitStamp = timeLimitStamp;
+        searchers = new AlphaBeta[Math.max(1, threadNumber)];
+        for (int i = 0; i < searchers.length; i++) {
+            searchers[i] = searcherFactory.apply(timeLimitStamp);
+        }
+        helperResults = new Future<?>[searchers.length - 1];
+        if (searchers.length > 1) {
+            helperThreads = Executors.newFixedThreadPool(searchers.length - 1, runnable -> {
+                Thread thread = new Thread(runnable, "lazy-smp-helper");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            helperThreads = null;
+        }
+    }
+
+    @Override
+    public void setEvaluator(OthelloEvaluator evaluator) {
+        for (AlphaBeta searcher : searchers) {
+            searcher.setEvaluator(evaluator);
+        }
+    }
+
+    @Override
+    public void setSearchDepth(int depth) {
+        this.searchDepth = depth;
+    }
+
+    @Override
+    public void setSearchWindow(int alpha, int beta) {
+        for (AlphaBeta searcher : searchers) {
+            searcher.setSearchWindow(alpha, beta);
+        }
+    }
+
+    /**
+     * Sets the transposition table shared by all the threads. Without table, the threads can not help each other.
+     */
+    public void setTranspositionTable(TranspositionTable transpositionTable) {
+        for (AlphaBeta searcher : searchers) {
+            searcher.setTranspositionTable(transpositionTable);
+        }
+    }
+
+    /**
+     * Sets the statistics updated by the calling thread search, or null to stop collecting them. The helper threads
+     * are not counted.
+     */
+    public void setStatistics(SearchStatistics statistics) {
+        searchers[0].setStatistics(statistics);
+    }
+
+    /**
+     * Enables the selective search of all the threads, or disables it if <code>probCut</code> is null, see
+     * AlphaBeta.setProbCut().
+     */
+    public void setProbCut(ProbCut probCut) {
+        for (AlphaBeta searcher : searchers) {
+            searcher.setProbCut(probCut);
+        }
+    }
+
+    /**
+     * Sets the time limit of the search, for all the threads. It can be called during the search by another thread.
+     */
+    public void setTimeLimitStamp(long timeLimitStamp) {
+        this.timeLimitStamp = timeLimitStamp;
+        for (AlphaBeta searcher : searchers) {
+            searcher.setTimeLimitStamp(timeLimitStamp);
+        }
+    }
+
+    @Override
+    public OthelloAction evaluate(OthelloPosition position) throws IllegalMoveException, OutOfTimeException {
+        startHelpers(position);
+        try {
+            //the time limit of the calling thread is only set by setTimeLimitStamp(), which may be called by another
+            //thread during the search
+            AlphaBeta mainSearcher = searchers[0];
+            mainSearcher.setSearchDepth(searchDepth);
+            return mainSearcher.evaluate(position);
+        } finally {
+            stopHelpers();
+        }
+    }
+
+    /**
+     * Searches the best moves with the calling thread searcher, see AlphaBeta.evaluateMultiPv(), helped by the other
+     * threads as for evaluate().
+     */
+    @Override
+    public List<PrincipalVariation> evaluateMultiPv(OthelloPosition position, int moveCount)
+            throws IllegalMoveException, OutOfTimeException {
+        startHelpers(position);
+        try {
+            AlphaBeta mainSearcher = searchers[0];
+            mainSearcher.setSearchDepth(searchDepth);
+            return mainSearcher.evaluateMultiPv(position, moveCount);
+        } finally {
+            stopHelpers();
+        }
+    }
+
+    /**
+     * Starts the helper threads searching <code>position</code>.
+     */
+    private void startHelpers(OthelloPosition position) {
+        for (int i = 1; i < searchers.length; i++) {
+            AlphaBeta helper = searchers[i];
+            helper.setTimeLimitStamp(timeLimitStamp);
+            //half of the helpers search one ply deeper, so that the threads do not all search the same nodes
+            int helperDepth = searchDepth + (i % 2);
+            helperResults[i - 1] = helperThreads.submit(() -> deepen(helper, position, helperDepth));
+        }
+    }
+
+    /**
+     * Searches <code>position</code> from <code>depth</code> and deeper until the helper is stopped.
+     */
+    private static void deepen(AlphaBeta helper, OthelloPosition position, int depth) {
+        try {
+            while (true) {
+                helper.setSearchDepth(depth++);
+                helper.evaluate(position);
+            }
+        } catch (OutOfTimeException | IllegalMoveException exception) {
+            //stopped, or the helper can not search the position
+        }
+    }
+
+    /**
+     * Stops the helper threads and waits for them to be done, so that none is still searching when the next
+     * evaluate() starts.
+     */
+    private void stopHelpers() {
+        for (int i = 1; i < searchers.length; i++) {
+            searchers[i].setTimeLimitStamp(0);
+        }
+        for (Future<?> helperResult : helperResults) {
+            try {
+                helperResult.get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException exception) {
+                throw new IllegalStateException(exception.getCause());
+            }
+        }
+    }
+
+    /**
+     * Stops the helper threads for good. The search can not be used anymore afterwards.
+     */
+    public void shutdown() {
+        if (helperThreads != null) {
+            helperThreads.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Micro-benchmarks of the board operations, the evaluators and the search, over the opening, midgame and endgame
+ * positions of PositionSuite. Each benchmark is warmed up, then run for a few measurement iterations; it reports its
+ * throughput in operations per second and the number of bytes allocated per operation by the benchmark thread.
+ *
+ * The results can be saved to a file and given as a baseline to a later run, which then prints the change of each
+ * benchmark, so that every change of the engine can be measured.
+ *
+ * Usage: java MicroBenchmark [-save results_file] [-baseline results_file] [name_filter]
+ */
+public class MicroBenchmark {
+    private static final int WARM_UP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final long ITERATION_NANOSECONDS = 200_000_000L;
+
+    /**
+     * Number of operations run between two checks of the time.
+     */
+    private static final int BATCH_SIZE = 64;
+
+    private static final String[][] CORPORA = {PositionSuite.OPENING, PositionSuite.MIDGAME, PositionSuite.ENDGAME};
+    private static final String[] CORPUS_NAMES = {"opening", "midgame", "endgame"};
+
+    /**
+     * Sum of the results of the operations, so that the JIT compiler can not remove them.
+     */
+    private static volatile int sink;
+
+    /**
+     * An operation on a position, returning any value depending on its result.
+     */
+    private interface Operation {
+        int run(OthelloPosition position) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String savedFile = null;
+        String baselineFile = null;
+        String filter = "";
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-save")) {
+                savedFile = args[++i];
+            } else if (args[i].equals("-baseline")) {
+                baselineFile = args[++i];
+            } else {
+                filter = args[i];
+            }
+        }
+        Map<String, Double> baseline = baselineFile != null ? readResults(baselineFile) : new HashMap<>();
+
+        Map<String, Operation> operations = new LinkedHashMap<>();
+        operations.put("getMoves", position -> position.getMoves().size());
+        operations.put("getMoveMask", position -> Long.bitCount(position.getMoveMask()));
+        operations.put("makeMove", position -> position.makeMove(position.getMoves().getFirst()).countEmpties());
+        operations.put("clone", position -> position.clone().countEmpties());
+        OthelloEvaluator boardEvaluator = new BoardEvaluator();
+        operations.put("BoardEvaluator", boardEvaluator::evaluate);
+        OthelloEvaluator naiveEvaluator = new NaiveCountingEvaluator();
+        operations.put("NaiveCountingEvaluator", naiveEvaluator::evaluate);
+        OthelloEvaluator patternEvaluator = new PatternEvaluator();
+        operations.put("PatternEvaluator", patternEvaluator::evaluate);
+        for (int depth : new int[]{2, 4, 6}) {
+            AlphaBeta moveChooser = new AlphaBeta(Long.MAX_VALUE);
+            moveChooser.setEvaluator(boardEvaluator);
+            moveChooser.setSearchDepth(depth);
+            operations.put("AlphaBeta depth " + depth, position -> moveChooser.evaluate(position).getValue());
+        }
+
+        PrintStream saved = savedFile != null ? new PrintStream(savedFile) : null;
+        System.out.printf("%-32s %14s %12s %10s%n", "benchmark", "ops/s", "bytes/op", "change");
+        for (Map.Entry<String, Operation> operation : operations.entrySet()) {
+            for (int corpus = 0; corpus < CORPORA.length; corpus++) {
+                String name = operation.getKey() + " " + CORPUS_NAMES[corpus];
+                if (!name.contains(filter)) {
+                    continue;
+                }
+                double[] result = measure(operation.getValue(), CORPORA[corpus]);
+                Double baselineOpsPerSecond = baseline.get(name);
+                String change = baselineOpsPerSecond == null ? ""
+                        : String.format("%+.1f%%", 100 * (result[0] / baselineOpsPerSecond - 1));
+                System.out.printf("%-32s %14.0f %12.1f %10s%n", name, result[0], result[1], change);
+                if (saved != null) {
+                    saved.println(name + "\t" + result[0] + "\t" + result[1]);
+                }
+            }
+        }
+        if (saved != null) {
+            saved.close();
+        }
+    }
+
+    /**
+     * Runs <code>operation</code> on the positions of <code>corpus</code> in turn and returns its throughput in
+     * operations per second and its allocation in bytes per operation, or -1 if the JVM can not measure it.
+     */
+    private static double[] measure(Operation operation, String[] corpus) throws Exception {
+        OthelloPosition[] positions = new OthelloPosition[corpus.length];
+        for (int i = 0; i < corpus.length; i++) {
+            positions[i] = new OthelloPosition(corpus[i]);
+        }
+        for (int iteration = 0; iteration < WARM_UP_ITERATIONS; iteration++) {
+            runIteration(operation, positions);
+        }
+
+        long operationCount = 0;
+        long startNanoseconds = System.nanoTime();
+        long startBytes = allocatedBytes();
+        for (int iteration = 0; iteration < MEASUREMENT_ITERATIONS; iteration++) {
+            operationCount += runIteration(operation, positions);
+        }
+        long bytes = allocatedBytes() - startBytes;
+        double seconds = (System.nanoTime() - startNanoseconds) / 1e9;
+        double bytesPerOperation = startBytes < 0 ? -1 : (double) bytes / operationCount;
+        return new double[]{operationCount / seconds, bytesPerOperation};
+    }
+
+    /**
+     * Runs <code>operation</code> during ITERATION_NANOSECONDS and returns the number of operations run.
+     */
+    private static long runIteration(Operation operation, OthelloPosition[] positions) throws Exception {
+        long endNanoseconds = System.nanoTime() + ITERATION_NANOSECONDS;
+        long operationCount = 0;
+        int result = 0;
+        int positionIndex = 0;
+        do {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                result += operation.run(positions[positionIndex]);
+                positionIndex = positionIndex + 1 == positions.length ? 0 : positionIndex + 1;
+            }
+            operationCount += BATCH_SIZE;
+        } while (System.nanoTime() < endNanoseconds);
+        sink += result;
+        return operationCount;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread since it started, or -1 if it is not available.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the throughputs of a file saved with -save.
+     */
+    private static Map<String, Double> readResults(String fileName) throws IOException {
+        Map<String, Double> results = new HashMap<>();
+        List<String> lines = Files.readAllLines(Paths.get(fileName));
+        for (String line : lines) {
+            String[] fields = line.split("\t");
+            results.put(fields[0], Double.parseDouble(fields[1]));
+        }
+        return results;
+    }
+}
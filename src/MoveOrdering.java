@@ -0,0 +1,27 @@
+/**
+ * This interface defines a move ordering strategy for AlphaBeta: the earlier the best move of a node is searched,
+ * the more the rest of the node is pruned. Moves are given as bit indexes of OthelloPosition.
+ *
+ * An implementation may keep statistics about the search, so an instance must only be used by one AlphaBeta.
+ */
+public interface MoveOrdering {
+
+	/**
+	 * Called at the start of each search, i.e. each AlphaBeta.evaluate(), to update the statistics kept from the
+	 * previous ones.
+	 */
+	public void newSearch();
+
+	/**
+	 * Sorts the <code>moveCount</code> first moves of <code>moves</code>, legal in <code>position</code>, so that
+	 * the most promising is first.
+	 * @param hashMove best move found for this position by a previous search, or TranspositionTable.NO_MOVE
+	 * @param ply distance of the position from the root of the search
+	 */
+	public void orderMoves(OthelloPosition position, int[] moves, int moveCount, int hashMove, int ply);
+
+	/**
+	 * Called when <code>move</code> caused a cutoff in <code>position</code>, searched to <code>depth</code> plies.
+	 */
+	public void recordCutoff(OthelloPosition position, int move, int ply, int depth);
+}
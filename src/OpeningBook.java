@@ -0,0 +1,218 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opening book: scored moves of the positions of the beginning of the game, computed offline by OpeningBookGenerator.
+ * The file is memory-mapped, so a lookup is a binary search in the mapped pages, without parsing nor copy in the heap.
+ *
+ * Positions are stored in their canonical form (see BoardSymmetry) with the discs of the player to move first, so the
+ * 8 symmetric positions, and the same position with the colours swapped, share their entries.
+ *
+ * File format, in big-endian:
+ * - header: the int MAGIC and the int number of records
+ * - records of RECORD_SIZE bytes, sorted by position then by decreasing score: the long discs of the player to move,
+ *   the long discs of the opponent, the int score of the move for the player to move, and the byte bit index of the
+ *   move in the canonical position
+ */
+public class OpeningBook {
+    /**
+     * File read by Othello and OthelloDaemon if it exists, in the directory they are run from.
+     */
+    static final String DEFAULT_FILE = "othello.book";
+
+    private static final int MAGIC = 0x4F424F4B;
+    private static final int HEADER_SIZE = 8;
+    static final int RECORD_SIZE = 21;
+
+    private final ByteBuffer records;
+    private final int recordCount;
+
+    /**
+     * Maps the book <code>file</code>. The mapping stays valid after the file channel is closed.
+     */
+    public OpeningBook(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not an opening book");
+        }
+        recordCount = buffer.getInt(4);
+        if ((long) recordCount * RECORD_SIZE != buffer.capacity() - HEADER_SIZE) {
+            throw new IOException(file + " is truncated");
+        }
+        records = buffer;
+    }
+
+    /**
+     * Returns the book in <code>fileName</code>, or null if there is no readable book there.
+     */
+    static OpeningBook openIfExists(String fileName) {
+        Path file = Paths.get(fileName);
+        if (!Files.isReadable(file)) {
+            return null;
+        }
+        try {
+            return new OpeningBook(file);
+        } catch (IOException exception) {
+            System.err.println("Opening book not used: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of scored moves in the book.
+     */
+    public int size() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the best book move of <code>position</code>, with its value from the point of view of white as for the
+     * searches, or null if the position is not in the book.
+     */
+    public OthelloAction lookup(OthelloPosition position) {
+        long player = position.getPlayerDiscs();
+        long opponent = position.getOpponentDiscs();
+        int symmetry = position.canonicalSymmetry();
+        int record = findFirstRecord(BoardSymmetry.transform(player, symmetry),
+                BoardSymmetry.transform(opponent, symmetry));
+        if (record < 0) {
+            return null;
+        }
+        int square = BoardSymmetry.transformSquare(squareOf(record), BoardSymmetry.inverse(symmetry));
+        //a book built for other rules or damaged must not make the engine play an illegal move
+        if ((position.getMoveMask() & (1L << square)) == 0) {
+            return null;
+        }
+        OthelloAction move = new OthelloAction(OthelloPosition.squareRow(square), OthelloPosition.squareColumn(square));
+        move.setValue(position.playerToMove ? scoreOf(record) : -scoreOf(record));
+        return move;
+    }
+
+    /**
+     * Returns the book moves of <code>position</code> whose score is at most <code>maxLoss</code> below the score of
+     * the best one, best first, with their values from the point of view of white. The list is empty if the position
+     * is not in the book.
+     */
+    public List<OthelloAction> lookupMoves(OthelloPosition position, int maxLoss) {
+        List<OthelloAction> moves = new ArrayList<>();
+        long player = position.getPlayerDiscs();
+        long opponent = position.getOpponentDiscs();
+        int symmetry = position.canonicalSymmetry();
+        long canonicalPlayer = BoardSymmetry.transform(player, symmetry);
+        long canonicalOpponent = BoardSymmetry.transform(opponent, symmetry);
+        int first = findFirstRecord(canonicalPlayer, canonicalOpponent);
+        if (first < 0) {
+            return moves;
+        }
+        int inverse = BoardSymmetry.inverse(symmetry);
+        long moveMask = position.getMoveMask();
+        //the records of a position are sorted by decreasing score
+        for (int record = first; record < recordCount && compareKey(record, canonicalPlayer, canonicalOpponent) == 0
+                && scoreOf(record) >= scoreOf(first) - maxLoss; record++) {
+            int square = BoardSymmetry.transformSquare(squareOf(record), inverse);
+            if ((moveMask & (1L << square)) != 0) {
+                OthelloAction move = new OthelloAction(OthelloPosition.squareRow(square),
+                        OthelloPosition.squareColumn(square));
+                move.setValue(position.playerToMove ? scoreOf(record) : -scoreOf(record));
+                moves.add(move);
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Returns the index of the first record of the canonical position <code>player</code>, <code>opponent</code>, or
+     * -1 if there is none.
+     */
+    private int findFirstRecord(long player, long opponent) {
+        int low = 0;
+        int high = recordCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareKey(middle, player, opponent) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        if (low < recordCount && compareKey(low, player, opponent) == 0) {
+            return low;
+        }
+        return -1;
+    }
+
+    private int compareKey(int record, long player, long opponent) {
+        int offset = HEADER_SIZE + record * RECORD_SIZE;
+        int comparison = Long.compareUnsigned(records.getLong(offset), player);
+        if (comparison != 0) {
+            return comparison;
+        }
+        return Long.compareUnsigned(records.getLong(offset + 8), opponent);
+    }
+
+    private int scoreOf(int record) {
+        return records.getInt(HEADER_SIZE + record * RECORD_SIZE + 16);
+    }
+
+    private int squareOf(int record) {
+        return records.get(HEADER_SIZE + record * RECORD_SIZE + 20);
+    }
+
+    /**
+     * A scored move of a canonical position, as written in the book file.
+     */
+    static class Entry implements Comparable<Entry> {
+        final long player;
+        final long opponent;
+        final int score;
+        final int square;
+
+        Entry(long player, long opponent, int score, int square) {
+            this.player = player;
+            this.opponent = opponent;
+            this.score = score;
+            this.square = square;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int comparison = Long.compareUnsigned(player, other.player);
+            if (comparison == 0) {
+                comparison = Long.compareUnsigned(opponent, other.opponent);
+            }
+            if (comparison == 0) {
+                comparison = Integer.compare(other.score, score);
+            }
+            return comparison;
+        }
+    }
+
+    /**
+     * Writes the book made of <code>entries</code>, which must be sorted, to <code>out</code>.
+     */
+    static void write(List<Entry> entries, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(entries.size());
+        for (Entry entry : entries) {
+            data.writeLong(entry.player);
+            data.writeLong(entry.opponent);
+            data.writeInt(entry.score);
+            data.writeByte(entry.square);
+        }
+        data.flush();
+    }
+}
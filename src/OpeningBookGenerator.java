@@ -0,0 +1,109 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds the opening book read by OpeningBook: every position reachable from the start position in less than a given
+ * number of plies is searched offline by a fixed depth multi-PV PrincipalVariationSearch that scores all its moves,
+ * and all the scored moves are written in the book.
+ *
+ * Positions are searched in their canonical form with white to move, so each set of symmetric positions is searched
+ * only once.
+ *
+ * Usage: java OpeningBookGenerator [book_file] [plies] [depth]
+ */
+public class OpeningBookGenerator {
+    private static final int DEFAULT_PLIES = 6;
+    private static final int DEFAULT_DEPTH = 8;
+    private static final int TRANSPOSITION_TABLE_MEGABYTES = 64;
+
+    private final PrincipalVariationSearch moveChooser = new PrincipalVariationSearch(Long.MAX_VALUE);
+    private final TranspositionTable transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_MEGABYTES);
+
+    public static void main(String[] args) throws IOException, IllegalMoveException, OutOfTimeException {
+        String fileName = args.length > 0 ? args[0] : OpeningBook.DEFAULT_FILE;
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PLIES;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH;
+
+        long startTime = System.currentTimeMillis();
+        List<OpeningBook.Entry> entries = new OpeningBookGenerator().generate(plies, depth);
+        Collections.sort(entries);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName))) {
+            OpeningBook.write(entries, out);
+        }
+        System.out.println(entries.size() + " moves written to " + fileName + " in "
+                + (System.currentTimeMillis() - startTime) / 1000 + " s");
+    }
+
+    public OpeningBookGenerator() {
+        moveChooser.setEvaluator(new BoardEvaluator());
+        moveChooser.setTranspositionTable(transpositionTable);
+    }
+
+    /**
+     * Returns the scored moves of all the positions reachable in less than <code>plies</code> plies from the start
+     * position, searched <code>depth</code> plies deep.
+     */
+    List<OpeningBook.Entry> generate(int plies, int depth) throws IllegalMoveException, OutOfTimeException {
+        List<OpeningBook.Entry> entries = new ArrayList<>();
+        OthelloPosition start = new OthelloPosition();
+        start.initialize();
+        Set<OthelloPosition> positions = new LinkedHashSet<>();
+        positions.add(canonicalPosition(start));
+
+        for (int ply = 0; ply < plies; ply++) {
+            Set<OthelloPosition> nextPositions = new LinkedHashSet<>();
+            for (OthelloPosition position : positions) {
+                addScoredMoves(position, depth, entries, nextPositions);
+            }
+            System.out.println("ply " + ply + ": " + positions.size() + " positions");
+            positions = nextPositions;
+        }
+        return entries;
+    }
+
+    /**
+     * Searches every move of the canonical <code>position</code>, adds its score to <code>entries</code> and the
+     * canonical position it leads to in <code>nextPositions</code>. The moves are all searched at once by a multi-PV
+     * search, which gives the exact score of each one.
+     */
+    private void addScoredMoves(OthelloPosition position, int depth, List<OpeningBook.Entry> entries,
+                                Set<OthelloPosition> nextPositions) throws IllegalMoveException, OutOfTimeException {
+        transpositionTable.newSearch();
+        moveChooser.setSearchDepth(depth);
+        for (PrincipalVariation variation : moveChooser.evaluateMultiPv(position, Integer.MAX_VALUE)) {
+            OthelloAction move = variation.getMove();
+            int square = OthelloPosition.toSquare(move.row, move.column);
+            //canonical positions have white to move, so the score of white is the score of the player to move
+            entries.add(new OpeningBook.Entry(position.getPlayerDiscs(), position.getOpponentDiscs(),
+                    variation.getValue(), square));
+
+            OthelloPosition movedPosition = position.clone();
+            movedPosition.doMove(square);
+            if (movedPosition.getMoveMask() == 0) {
+                //the opponent passes
+                movedPosition.doMove(OthelloPosition.PASS);
+            }
+            if (movedPosition.getMoveMask() != 0) {
+                nextPositions.add(canonicalPosition(movedPosition));
+            }
+        }
+    }
+
+    /**
+     * Returns the canonical form of <code>position</code> with white to move.
+     */
+    private static OthelloPosition canonicalPosition(OthelloPosition position) {
+        long player = position.getPlayerDiscs();
+        long opponent = position.getOpponentDiscs();
+        int symmetry = position.canonicalSymmetry();
+        return new OthelloPosition(BoardSymmetry.transform(player, symmetry),
+                BoardSymmetry.transform(opponent, symmetry), true);
+    }
+}
@@ -112,10 +112,15 @@ public class OthelloAction {
 	}
 
 	public void print() {
+		System.out.println(toString());
+	}
+
+	/** Returns the move as printed by print(): "pass" or "(row,column)". */
+	public String toString() {
 		if (pass) {
-			System.out.println("pass");
+			return "pass";
 		} else {
-			System.out.println("(" + row + "," + column + ")");
+			return "(" + row + "," + column + ")";
 		}
 	}
 
@@ -1,3 +1,5 @@
+import java.util.List;
+
 /**
  * This interface defines the mandatory methods for game playing algorithms,
  * i.e., algorithms that take an <code>OthelloAlgorithm</code> and return a
@@ -24,6 +26,25 @@ public interface OthelloAlgorithm {
 	 */
 	public OthelloAction evaluate(OthelloPosition position) throws IllegalMoveException, OutOfTimeException;
 
+	/**
+	 * Returns the <code>moveCount</code> best moves of the player who has the
+	 * move, best first, each one with its exact value and its principal
+	 * variation, or all the moves if there are fewer. Algorithms without a
+	 * multi-PV search only return their best move. The search window is
+	 * ignored, and left as it was for the next searches.
+	 */
+	public List<PrincipalVariation> evaluateMultiPv(OthelloPosition position, int moveCount)
+			throws IllegalMoveException, OutOfTimeException;
+
 	/** Sets the maximum search depth of the algorithm. */
 	public void setSearchDepth(int depth);
+
+	/**
+	 * Sets the window [alpha,beta] the next searches start with. If the value of
+	 * the returned <code>OthelloAction</code> is at most alpha or at least beta,
+	 * it is only a bound of the real value and the search has to be made again
+	 * with a wider window. Use Integer.MIN_VALUE and Integer.MAX_VALUE for a full
+	 * window.
+	 */
+	public void setSearchWindow(int alpha, int beta);
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Long-lived engine: a single OthelloEngine answers all the moves of one or several games, so that the JVM is started
+ * and the code compiled by the JIT only once, and the transposition table and move ordering statistics are kept
+ * between moves. While the opponent thinks, the engine ponders: it searches the position expected after the opponent
+ * reply, see Ponderer.
+ *
+ * Each request is a line with the position string and the time limit in seconds, as given to Othello, and is answered
+ * by a line with the move, as printed by Othello. A malformed request, without a time limit or with one that is not a
+ * number, is answered by a line with "error:" and the reason.
+ * The line "quit" stops the daemon. Requests are read on the standard input, or on a local socket if a port is given,
+ * which is what the othello_client script uses.
+ *
+ * Usage: java OthelloDaemon [port]
+ */
+public class OthelloDaemon {
+    /**
+     * Time spent searching the positions of PositionSuite before answering the first request, so that the first move
+     * is searched as deep as the next ones.
+     */
+    private static final int WARM_UP_MILLISECONDS = 3000;
+
+    private final OthelloEngine engine = new OthelloEngine();
+    private final Ponderer ponderer = new Ponderer(engine);
+
+    public static void main(String[] args) throws IOException {
+        warmUp();
+        OthelloDaemon daemon = new OthelloDaemon();
+        daemon.engine.setOpeningBook(OpeningBook.openIfExists(OpeningBook.DEFAULT_FILE));
+        //-Dothello.statistics=true prints the statistics of every searched move on the standard error
+        if (Boolean.getBoolean("othello.statistics")) {
+            daemon.engine.setStatisticsOutput(System.err);
+        }
+        //tuned weights of BoardEvaluator, overridden by the pattern tables if there are both
+        BoardEvaluator boardEvaluator = BoardEvaluator.loadIfExists(BoardEvaluator.DEFAULT_FILE);
+        if (boardEvaluator != null) {
+            daemon.engine.setEvaluator(boardEvaluator);
+        }
+        PatternEvaluator patternEvaluator = PatternEvaluator.loadIfExists(PatternEvaluator.DEFAULT_FILE);
+        if (patternEvaluator != null) {
+            daemon.engine.setEvaluator(patternEvaluator);
+        }
+        //selective search, if its parameters have been calibrated for the evaluator by ProbCutCalibration
+        daemon.engine.setProbCut(ProbCut.loadIfExists(ProbCut.DEFAULT_FILE));
+        if (args.length > 0) {
+            daemon.serveSocket(Integer.parseInt(args[0]));
+        } else {
+            daemon.serve(new BufferedReader(new InputStreamReader(System.in)), System.out);
+        }
+    }
+
+    /**
+     * Searches the positions of PositionSuite with an engine that is thrown away afterwards, so that its statistics do
+     * not mix with the ones of the games.
+     */
+    private static void warmUp() {
+        OthelloEngine warmUpEngine = new OthelloEngine();
+        String[] positions = PositionSuite.all();
+        long timePerPosition = WARM_UP_MILLISECONDS / positions.length;
+        for (String positionString : positions) {
+            try {
+                warmUpEngine.chooseMove(new OthelloPosition(positionString), System.currentTimeMillis() + timePerPosition);
+            } catch (IllegalMoveException exception) {
+                //the suite only contains legal positions
+            }
+        }
+    }
+
+    /**
+     * Answers the requests of the clients connecting to <code>port</code> on the local host, one client at a time,
+     * until one of them sends "quit".
+     */
+    private void serveSocket(int port) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+            boolean running = true;
+            while (running) {
+                try (Socket client = serverSocket.accept()) {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+                    PrintStream out = new PrintStream(client.getOutputStream(), true);
+                    running = serve(in, out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers the requests read from <code>in</code> until its end. Returns false if the daemon has to stop.
+     */
+    private boolean serve(BufferedReader in, PrintStream out) throws IOException {
+        String request;
+        while ((request = in.readLine()) != null) {
+            request = request.trim();
+            if (request.equals("quit")) {
+                ponderer.finish(null, 0);
+                return false;
+            }
+            String[] arguments = request.split("\\s+");
+            if (arguments.length < 2) {
+                //the client waits for a line, it must get one even for an incomplete request
+                out.println("error: expected a position and a time limit");
+                continue;
+            }
+            //the time limit starts when the request is received
+            int timeLimit;
+            try {
+                timeLimit = Integer.parseInt(arguments[1]);
+            } catch (NumberFormatException exception) {
+                //a bad request must not stop the daemon, nor the pondering
+                out.println("error: invalid time limit " + arguments[1]);
+                continue;
+            }
+            long timeLimitStamp = TimeManager.computeTimeLimitStamp(timeLimit);
+            OthelloPosition position = new OthelloPosition(arguments[0]);
+            OthelloAction chosenMove = ponderer.finish(position, timeLimitStamp);
+            try {
+                if (chosenMove == null) {
+                    chosenMove = engine.chooseMove(position, timeLimitStamp);
+                }
+            } catch (IllegalMoveException exception) {
+                chosenMove = new OthelloAction(0, 0, true);
+            }
+            out.println(chosenMove);
+            ponderer.start(position, chosenMove);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,304 @@
+import java.io.PrintStream;
+
+/**
+ * Class that chooses the move to play in a position under a time limit. It manages the iterative deepening search,
+ * through an exception catch, with aspiration windows, and switches to the EndgameSolver close to the end of the game.
+ * The TimeManager decides whether a new depth is started.
+ * Positions of the OpeningBook, if there is one, are answered without searching.
+ *
+ * The transposition table and the move ordering statistics are kept from one move to the next, so a long-lived engine
+ * (see OthelloDaemon) searches deeper than a new one for each move.
+ */
+public class OthelloEngine {
+    /**
+     * Size of the transposition table used during the search.
+     */
+    private static final int TRANSPOSITION_TABLE_MEGABYTES = 32;
+
+    /**
+     * Half width of the first aspiration window around the score of the previous depth. It is doubled every time the
+     * search fails outside of the window.
+     */
+    private static final int ASPIRATION_WINDOW = 16;
+
+    /**
+     * Under this number of empty cells, the EndgameSolver is used to find the best move.
+     */
+    private static final int ENDGAME_EMPTIES = 18;
+
+    /**
+     * Part of the time given to the normal search in the endgame, to have a move if the solver does not finish.
+     */
+    private static final int ENDGAME_SEARCH_TIME_DIVISOR = 4;
+
+    private final LazySmpSearch moveChooser;
+    private final TranspositionTable transpositionTable;
+    private OpeningBook openingBook;
+    private final TimeManager timeManager = new TimeManager();
+
+    /**
+     * Statistics of the searches and the stream their reports are printed on, both null if they are disabled.
+     */
+    private SearchStatistics statistics;
+    private PrintStream statisticsOut;
+
+    /**
+     * State of the current search. The time limits can be changed by another thread while searching, see
+     * setTimeLimitStamp().
+     */
+    private volatile boolean isEndgame;
+    private volatile long timeLimitStamp;
+    private volatile EndgameSolver endgameSolver;
+
+    public OthelloEngine() {
+        moveChooser = new LazySmpSearch(Runtime.getRuntime().availableProcessors(), PrincipalVariationSearch::new,
+                Long.MAX_VALUE);
+        OthelloEvaluator evaluator = new BoardEvaluator();
+        moveChooser.setEvaluator(evaluator);
+        //the table is shared by all the depths of the iterative deepening, and by the following moves
+        transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_MEGABYTES);
+        moveChooser.setTranspositionTable(transpositionTable);
+    }
+
+    /**
+     * Sets the evaluator of the positions at the search horizon, BoardEvaluator by default.
+     */
+    public void setEvaluator(OthelloEvaluator evaluator) {
+        moveChooser.setEvaluator(evaluator);
+    }
+
+    /**
+     * Enables the selective search with the parameters <code>probCut</code>, or disables it if it is null. The
+     * EndgameSolver always searches all the moves.
+     */
+    public void setProbCut(ProbCut probCut) {
+        moveChooser.setProbCut(probCut);
+    }
+
+    /**
+     * Enables the statistics of the searches: a JSON line with the statistics of every searched move (see
+     * SearchStatistics) is printed on <code>out</code>. A null <code>out</code> disables them.
+     */
+    public void setStatisticsOutput(PrintStream out) {
+        statisticsOut = out;
+        statistics = out != null ? new SearchStatistics() : null;
+        moveChooser.setStatistics(statistics);
+    }
+
+    /**
+     * Sets the book whose moves are played without searching, or null to always search.
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Returns the move to play in <code>position</code>, found before <code>timeLimitStamp</code>. It is a pass move
+     * if no move is possible.
+     */
+    public OthelloAction chooseMove(OthelloPosition position, long timeLimitStamp) throws IllegalMoveException {
+        OthelloAction bookMove = lookupBook(position);
+        if (bookMove != null) {
+            return bookMove;
+        }
+        startSearch(position, timeLimitStamp);
+        return search(position);
+    }
+
+    /**
+     * Returns the move of the opening book for <code>position</code>, or null if there is no book or the position is
+     * not in it.
+     */
+    OthelloAction lookupBook(OthelloPosition position) {
+        return openingBook != null ? openingBook.lookup(position) : null;
+    }
+
+    /**
+     * Prepares the search of <code>position</code> until <code>timeLimitStamp</code>. It is separated from search()
+     * so that the time limit can be changed by another thread as soon as this method returns, see Ponderer.
+     */
+    void startSearch(OthelloPosition position, long timeLimitStamp) {
+        transpositionTable.newSearch();
+        endgameSolver = null;
+        isEndgame = position.countEmpties() <= ENDGAME_EMPTIES;
+        setTimeLimitStamp(timeLimitStamp);
+    }
+
+    /**
+     * Changes the time limit of the current search, which may be running in another thread: for instance 0 stops it.
+     * In the endgame, the normal search only gets a part of the remaining time, the rest is for the solver.
+     */
+    void setTimeLimitStamp(long timeLimitStamp) {
+        this.timeLimitStamp = timeLimitStamp;
+        long searchTimeLimitStamp = timeLimitStamp;
+        if (isEndgame) {
+            long now = System.currentTimeMillis();
+            searchTimeLimitStamp = now + (timeLimitStamp - now) / ENDGAME_SEARCH_TIME_DIVISOR;
+        }
+        timeManager.setLimitStamp(searchTimeLimitStamp);
+        moveChooser.setTimeLimitStamp(searchTimeLimitStamp);
+        EndgameSolver solver = endgameSolver;
+        if (solver != null) {
+            solver.setTimeLimitStamp(timeLimitStamp);
+        }
+    }
+
+    /**
+     * Searches the move to play in <code>position</code> until the time limit set by startSearch().
+     */
+    OthelloAction search(OthelloPosition position) throws IllegalMoveException {
+        SearchStatistics statistics = this.statistics;
+        if (statistics != null) {
+            statistics.startMove();
+        }
+        //the depths beyond the empty cells change nothing
+        OthelloAction chosenMove = iterativeDeepening(moveChooser, timeManager, position, position.countEmpties(),
+                statistics).move;
+        if (isEndgame) {
+            chosenMove = solveEndgame(position, chosenMove);
+        }
+        if (statistics != null) {
+            statistics.report(statisticsOut, position, chosenMove);
+        }
+        return chosenMove;
+    }
+
+    /**
+     * Searches <code>position</code> by iterative deepening from depth 1 to <code>maxDepth</code>, with aspiration
+     * windows from the second depth, until <code>timeManager</code> does not let the next depth start or the running
+     * one is stopped by the time limit of <code>moveChooser</code>. Both limits must be set before, and may be changed
+     * by another thread during the search (see Ponderer). The first depth is always searched so that there is a move,
+     * and if even it is stopped the first legal move is returned. A position without legal move returns a pass move.
+     *
+     * The iterations are recorded in <code>statistics</code> if it is not null, the move being started by the caller.
+     */
+    static SearchResult iterativeDeepening(OthelloAlgorithm moveChooser, TimeManager timeManager,
+            OthelloPosition position, int maxDepth, SearchStatistics statistics) throws IllegalMoveException {
+        if (position.getMoveMask() == 0) {
+            return new SearchResult(new OthelloAction(0, 0, true), 0);
+        }
+        OthelloAction chosenMove = null;
+        int completedDepth = 0;
+        timeManager.startMove();
+        //Stop the search when the next depth is not expected to end before the time limit
+        for (int depth = 1; depth <= maxDepth && (depth == 1 || timeManager.canStartIteration()); depth++) {
+            moveChooser.setSearchDepth(depth);
+            timeManager.startIteration();
+            try {
+                if (chosenMove == null) {
+                    moveChooser.setSearchWindow(Integer.MIN_VALUE, Integer.MAX_VALUE);
+                    chosenMove = moveChooser.evaluate(position);
+                } else {
+                    chosenMove = aspirationSearch(moveChooser, position, chosenMove.getValue());
+                }
+                completedDepth = depth;
+                timeManager.endIteration();
+                if (statistics != null) {
+                    statistics.endIteration(depth, true);
+                }
+            } catch (OutOfTimeException exception) {
+                //time is up
+                if (statistics != null) {
+                    statistics.endIteration(depth, false);
+                }
+                break;
+            }
+        }
+        if (chosenMove == null) {
+            chosenMove = position.getMoves().getFirst();
+        }
+        return new SearchResult(chosenMove, completedDepth);
+    }
+
+    /**
+     * The result of an iterative deepening: the move of the last completed depth, with its value, and this depth, 0
+     * if no depth was completed.
+     */
+    static class SearchResult {
+        final OthelloAction move;
+        final int depth;
+
+        SearchResult(OthelloAction move, int depth) {
+            this.move = move;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Returns the position the engine expects to play next after <code>playedMove</code> in <code>position</code>,
+     * i.e. after the opponent reply of the principal variation, found in the transposition table. Returns null if the
+     * reply is unknown.
+     */
+    OthelloPosition predictNextPosition(OthelloPosition position, OthelloAction playedMove) {
+        try {
+            OthelloPosition opponentPosition = position.makeMove(playedMove);
+            if (opponentPosition.getMoveMask() == 0) {
+                return opponentPosition.makeMove(new OthelloAction(0, 0, true));
+            }
+            long entry = transpositionTable.probe(opponentPosition.getHash());
+            if (entry == 0 || TranspositionTable.moveOf(entry) == TranspositionTable.NO_MOVE) {
+                return null;
+            }
+            int reply = TranspositionTable.moveOf(entry);
+            return opponentPosition.makeMove(new OthelloAction(OthelloPosition.squareRow(reply),
+                    OthelloPosition.squareColumn(reply)));
+        } catch (IllegalMoveException exception) {
+            //the entry belongs to another position with the same slot
+            return null;
+        }
+    }
+
+    /**
+     * Solves <code>position</code> until the end of the game: first to know if it is won, which is faster, then to
+     * know the exact score. Returns the move of the last solve that finished before the time limit, or
+     * <code>searchedMove</code> if none did.
+     */
+    private OthelloAction solveEndgame(OthelloPosition position, OthelloAction searchedMove) {
+        OthelloAction chosenMove = searchedMove;
+        for (EndgameSolver.Mode mode : EndgameSolver.Mode.values()) {
+            EndgameSolver solver = new EndgameSolver(mode, timeLimitStamp);
+            endgameSolver = solver;
+            //the time limit may have changed before the solver was visible to setTimeLimitStamp()
+            solver.setTimeLimitStamp(timeLimitStamp);
+            try {
+                OthelloAction solvedMove = solver.evaluate(position);
+                if (!solvedMove.equals(new OthelloAction(0, 0))) {
+                    chosenMove = solvedMove;
+                }
+            } catch (OutOfTimeException exception) {
+                //time is up
+                break;
+            } finally {
+                if (statistics != null) {
+                    statistics.addSolverNodes(solver.getNodeCount());
+                }
+            }
+        }
+        return chosenMove;
+    }
+
+    /**
+     * Searches <code>position</code> with a window centered on the score of the previous depth, which is usually close
+     * to the new score and makes the search prune more. When the score falls outside of the window, the window is
+     * widened on that side and the position searched again, until the score is inside of it.
+     */
+    static OthelloAction aspirationSearch(OthelloAlgorithm moveChooser, OthelloPosition position, int previousScore)
+            throws IllegalMoveException, OutOfTimeException {
+        long alphaWidth = ASPIRATION_WINDOW;
+        long betaWidth = ASPIRATION_WINDOW;
+        while (true) {
+            int alpha = (int) Math.max(Integer.MIN_VALUE, previousScore - alphaWidth);
+            int beta = (int) Math.min(Integer.MAX_VALUE, previousScore + betaWidth);
+            moveChooser.setSearchWindow(alpha, beta);
+            OthelloAction move = moveChooser.evaluate(position);
+
+            if (move.getValue() <= alpha && alpha != Integer.MIN_VALUE) {
+                alphaWidth *= 2;
+            } else if (move.getValue() >= beta && beta != Integer.MAX_VALUE) {
+                betaWidth *= 2;
+            } else {
+                return move;
+            }
+        }
+    }
+}
@@ -2,23 +2,72 @@ import java.util.*;
 import java.lang.*;
 
 /**
- * This class is used to represent game positions. It uses a 2-dimensional char
- * array for the board and a Boolean to keep track of which player has the move.
+ * This class is used to represent game positions. It uses two 64-bit bitboards
+ * for the board, one per player, and a Boolean to keep track of which player
+ * has the move.
  *
  * @author Henrik Bj&ouml;rklund
  */
 
 public class OthelloPosition {
     /**
-     * An array used to get an opposite direction, which are row and column differences from the central cell.
-     * Used by isAPossibleMove(), used by getMoves()
+     * For a normal Othello game, BOARD_SIZE is 8.
      */
-    protected static final int[] OPPOSITE_DIRECTION_VALUES = {1, 0, -1};
+    protected static final int BOARD_SIZE = 8;
 
     /**
-     * For a normal Othello game, BOARD_SIZE is 8.
+     * Bit masks of every square except those of the first (A) or the last (H) column. They are applied after a
+     * shift to remove the discs that wrapped around to the other side of the board.
      */
-    protected static final int BOARD_SIZE = 8;
+    static final long NOT_A_COLUMN = 0xFEFEFEFEFEFEFEFEL;
+    static final long NOT_H_COLUMN = 0x7F7F7F7F7F7F7F7FL;
+
+    /**
+     * Bit mask of the six inner columns, used to mask the opponent discs during move generation so that horizontal
+     * and diagonal shifts can not wrap around the board.
+     */
+    private static final long INNER_COLUMNS = 0x7E7E7E7E7E7E7E7EL;
+
+    /**
+     * Shift amounts of the 8 directions: east, south-east, south, south-west, west, north-west, north, north-east.
+     * A positive amount is a left shift (towards higher squares), a negative one a right shift.
+     */
+    private static final int[] DIRECTION_SHIFTS = {1, 9, 8, 7, -1, -9, -8, -7};
+
+    /**
+     * Masks applied after shifting in the direction of the same index in DIRECTION_SHIFTS.
+     */
+    private static final long[] DIRECTION_MASKS = {NOT_A_COLUMN, NOT_A_COLUMN, -1L, NOT_H_COLUMN,
+            NOT_H_COLUMN, NOT_H_COLUMN, -1L, NOT_A_COLUMN};
+
+    /**
+     * Bit index used for a pass move by doMove(int) and the undo stack.
+     */
+    static final int PASS = -1;
+
+    /**
+     * Maximum number of moves that can be made with doMove() before being undone: 60 disc moves and as many
+     * pass moves between them.
+     */
+    private static final int MAX_UNDO_DEPTH = 128;
+
+    /**
+     * Zobrist keys: a random number per disc color and square, and one for the white player having the move. The
+     * hash of a position is the xor of the keys of its discs, and of WHITE_TO_MOVE_KEY if white has the move. The
+     * seed is fixed so that hashes are the same from one run to another.
+     */
+    private static final long[] WHITE_DISC_KEYS = new long[64];
+    private static final long[] BLACK_DISC_KEYS = new long[64];
+    private static final long WHITE_TO_MOVE_KEY;
+
+    static {
+        Random random = new Random(0x07E1105EEDL);
+        for (int square = 0; square < 64; square++) {
+            WHITE_DISC_KEYS[square] = random.nextLong();
+            BLACK_DISC_KEYS[square] = random.nextLong();
+        }
+        WHITE_TO_MOVE_KEY = random.nextLong();
+    }
 
     /**
      * True if the first player (white) has the move.
@@ -26,57 +75,64 @@ public class OthelloPosition {
     protected boolean playerToMove;
 
     /**
-     * The representation of the board. For convenience, the array actually has
-     * two columns and two rows more that the actual game board. The 'middle' is
-     * used for the board. The first index is for rows, and the second for
-     * columns. This means that for a standard 8x8 game board,
-     * <code>board[1][1]</code> represents the upper left corner,
-     * <code>board[1][8]</code> the upper right corner, <code>board[8][1]</code>
-     * the lower left corner, and <code>board[8][8]</code> the lower left
-     * corner. In the array, the charachters 'E', 'W', and 'B' are used to
-     * represent empty, white, and black board squares, respectively.
+     * The representation of the board as two bitboards, one per player. Square
+     * <code>(row, column)</code> of the board, with rows and columns numbered from 1 to 8, is the bit
+     * <code>(row - 1) * 8 + (column - 1)</code>. This means that bit 0 represents the upper left corner, bit 7 the
+     * upper right corner, bit 56 the lower left corner and bit 63 the lower right corner.
+     */
+    protected long whiteDiscs;
+    protected long blackDiscs;
+
+    /**
+     * The undo stack of doMove() and undoMove(): the bit index of each move (PASS for a pass move) and the discs
+     * it flipped. The arrays are only allocated by the first doMove(), so that makeMove() and clone() stay cheap.
      */
-    protected char[][] board;
+    private int[] undoSquares;
+    private long[] undoFlips;
+    private long[] undoHashes;
+    private int undoTop;
+
+    /**
+     * Evaluation terms updated by the moves made in place, see setIncrementalEvaluation(). It is not copied by
+     * clone(), so positions created by makeMove() have none.
+     */
+    private IncrementalEvaluation incrementalEvaluation;
+
+    /**
+     * The Zobrist hash of the position, updated incrementally when a move is made.
+     */
+    protected long hash;
 
     /**
      * Creates a new position and sets all squares to empty.
      */
     public OthelloPosition() {
-        board = new char[BOARD_SIZE + 2][BOARD_SIZE + 2];
-        for (int i = 0; i < BOARD_SIZE + 2; i++)
-            for (int j = 0; j < BOARD_SIZE + 2; j++)
-                board[i][j] = 'E';
-
     }
 
     public OthelloPosition(String s) {
-        if (s.length() != 65) {
-            board = new char[BOARD_SIZE + 2][BOARD_SIZE + 2];
-            for (int i = 0; i < BOARD_SIZE + 2; i++)
-                for (int j = 0; j < BOARD_SIZE + 2; j++)
-                    board[i][j] = 'E';
-        } else {
-            board = new char[BOARD_SIZE + 2][BOARD_SIZE + 2];
-            if (s.charAt(0) == 'W') {
-                playerToMove = true;
-            } else {
-                playerToMove = false;
-            }
+        if (s.length() == 65) {
+            playerToMove = s.charAt(0) == 'W';
             for (int i = 1; i <= 64; i++) {
-                char c;
-                if (s.charAt(i) == 'E') {
-                    c = 'E';
-                } else if (s.charAt(i) == 'O') {
-                    c = 'W';
-                } else {
-                    c = 'B';
+                long squareBit = 1L << (i - 1);
+                char c = s.charAt(i);
+                if (c == 'O') {
+                    whiteDiscs |= squareBit;
+                } else if (c != 'E') {
+                    blackDiscs |= squareBit;
                 }
-                int column = ((i - 1) % 8) + 1;
-                int row = (i - 1) / 8 + 1;
-                board[row][column] = c;
             }
         }
+        hash = computeHash();
+    }
 
+    /**
+     * Creates the position made of the discs <code>whiteDiscs</code> and <code>blackDiscs</code>.
+     */
+    OthelloPosition(long whiteDiscs, long blackDiscs, boolean playerToMove) {
+        this.whiteDiscs = whiteDiscs;
+        this.blackDiscs = blackDiscs;
+        this.playerToMove = playerToMove;
+        hash = computeHash();
     }
 
     /**
@@ -84,9 +140,97 @@ public class OthelloPosition {
      * board.
      */
     public void initialize() {
-        board[BOARD_SIZE / 2][BOARD_SIZE / 2] = board[BOARD_SIZE / 2 + 1][BOARD_SIZE / 2 + 1] = 'W';
-        board[BOARD_SIZE / 2][BOARD_SIZE / 2 + 1] = board[BOARD_SIZE / 2 + 1][BOARD_SIZE / 2] = 'B';
+        whiteDiscs = squareBit(BOARD_SIZE / 2, BOARD_SIZE / 2) | squareBit(BOARD_SIZE / 2 + 1, BOARD_SIZE / 2 + 1);
+        blackDiscs = squareBit(BOARD_SIZE / 2, BOARD_SIZE / 2 + 1) | squareBit(BOARD_SIZE / 2 + 1, BOARD_SIZE / 2);
         playerToMove = true;
+        hash = computeHash();
+    }
+
+	/* square and bitboard helpers */
+
+    /**
+     * Returns the bit index of the square at [row,column], rows and columns being numbered from 1 to BOARD_SIZE.
+     */
+    static int toSquare(int row, int column) {
+        return (row - 1) * BOARD_SIZE + column - 1;
+    }
+
+    /**
+     * Returns the bitboard containing only the square at [row,column].
+     */
+    static long squareBit(int row, int column) {
+        return 1L << toSquare(row, column);
+    }
+
+    /**
+     * Returns the row, from 1 to BOARD_SIZE, of a bit index.
+     */
+    static int squareRow(int square) {
+        return square / BOARD_SIZE + 1;
+    }
+
+    /**
+     * Returns the column, from 1 to BOARD_SIZE, of a bit index.
+     */
+    static int squareColumn(int square) {
+        return square % BOARD_SIZE + 1;
+    }
+
+    /**
+     * Returns the content of the cell at [row,column]: 'W' for a white disc, 'B' for a black disc and 'E' for an
+     * empty cell or a cell outside of the board.
+     */
+    public char getCell(int row, int column) {
+        if (!isInsideBoard(row, column)) {
+            return 'E';
+        }
+        long bit = squareBit(row, column);
+        if ((whiteDiscs & bit) != 0) {
+            return 'W';
+        } else if ((blackDiscs & bit) != 0) {
+            return 'B';
+        }
+        return 'E';
+    }
+
+    /**
+     * Returns the number of discs of the white player if <code>white</code> is true, else of the black player.
+     */
+    public int countDiscs(boolean white) {
+        return Long.bitCount(white ? whiteDiscs : blackDiscs);
+    }
+
+    /**
+     * Returns the number of empty cells of the board.
+     */
+    public int countEmpties() {
+        return Long.bitCount(~(whiteDiscs | blackDiscs));
+    }
+
+    /**
+     * Returns the bitboard of the discs of the player who has the move.
+     */
+    long getPlayerDiscs() {
+        return playerToMove ? whiteDiscs : blackDiscs;
+    }
+
+    /**
+     * Returns the bitboard of the discs of the player who does not have the move.
+     */
+    long getOpponentDiscs() {
+        return playerToMove ? blackDiscs : whiteDiscs;
+    }
+
+    /**
+     * Shifts all the bits of <code>bits</code> one square in the direction of index <code>direction</code> of
+     * DIRECTION_SHIFTS, dropping the bits that leave the board.
+     */
+    static long shift(long bits, int direction) {
+        int amount = DIRECTION_SHIFTS[direction];
+        if (amount > 0) {
+            return (bits << amount) & DIRECTION_MASKS[direction];
+        }
+        return (bits >>> -amount) & DIRECTION_MASKS[direction];
     }
 
 	/* getMoves and helper functions */
@@ -100,40 +244,82 @@ public class OthelloPosition {
     public LinkedList<OthelloAction> getMoves() {
         LinkedList<OthelloAction> moves = new LinkedList<>();
 
-        char playerDisc = getPlayerDisc(playerToMove);
-        char opponentDisc = getPlayerDisc(!playerToMove);
-
-        //for every cell
-        for (int row = 1; row <= BOARD_SIZE; row++) {
-            for (int column = 1; column <= BOARD_SIZE; column++) {
-                //if the cell contains an opponent Disc
-                if (board[row][column] == opponentDisc) {
-                    //for every cell adjacent to the opponent disc
-                    for (int rowDifference = -1; rowDifference <= 1; rowDifference++) {
-                        for (int columnDifference = -1; columnDifference <= 1; columnDifference++) {
-                            if (!(columnDifference == 0 && rowDifference == 0)) {
-                                int testedRow = row + rowDifference;
-                                int testedColumn = column + columnDifference;
-                                //if an adjacent cell is empty
-                                if (isInsideBoard(testedRow, testedColumn) && board[testedRow][testedColumn] == 'E') {
-                                    //check if there a possible move in the opposite direction move
-                                    if (isAPossibleMove(playerDisc, row, column, rowDifference, columnDifference)) {
-                                        OthelloAction possibleAction = new OthelloAction(testedRow, testedColumn);
-
-                                        //if, it does not already exist, add it to the possible moves
-                                        if (!moves.contains(possibleAction))
-                                            moves.add(possibleAction);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+        long moveMask = getMoveMask();
+        while (moveMask != 0) {
+            int square = Long.numberOfTrailingZeros(moveMask);
+            moves.add(new OthelloAction(squareRow(square), squareColumn(square)));
+            moveMask &= moveMask - 1;
         }
         return moves;
     }
 
+    /**
+     * Returns the bitboard of all the cells where the player who has the move can play.
+     */
+    long getMoveMask() {
+        return computeMoveMask(getPlayerDiscs(), getOpponentDiscs());
+    }
+
+    /**
+     * Computes the legal moves of <code>player</code> against <code>opponent</code> with parallel-prefix (Kogge-Stone)
+     * fills: the opponent discs adjacent to player discs are propagated 1, 2 then 4 squares at a time in each pair of
+     * opposite directions, so every line is resolved in a constant number of shifts without any loop on the squares.
+     */
+    static long computeMoveMask(long player, long opponent) {
+        long empty = ~(player | opponent);
+        long innerOpponent = opponent & INNER_COLUMNS;
+
+        long moves = lineMoves(player, innerOpponent, 1)
+                | lineMoves(player, opponent, 8)
+                | lineMoves(player, innerOpponent, 7)
+                | lineMoves(player, innerOpponent, 9);
+        return moves & empty;
+    }
+
+    /**
+     * Returns the cells ending a line of <code>mask</code> discs that starts from a <code>player</code> disc, in both
+     * directions given by a shift of <code>direction</code> bits.
+     */
+    private static long lineMoves(long player, long mask, int direction) {
+        int doubleDirection = direction + direction;
+
+        long flipLeft = mask & (player << direction);
+        long flipRight = mask & (player >>> direction);
+        flipLeft |= mask & (flipLeft << direction);
+        flipRight |= mask & (flipRight >>> direction);
+
+        long prefixLeft = mask & (mask << direction);
+        long prefixRight = prefixLeft >>> direction;
+        flipLeft |= prefixLeft & (flipLeft << doubleDirection);
+        flipRight |= prefixRight & (flipRight >>> doubleDirection);
+        flipLeft |= prefixLeft & (flipLeft << doubleDirection);
+        flipRight |= prefixRight & (flipRight >>> doubleDirection);
+
+        return (flipLeft << direction) | (flipRight >>> direction);
+    }
+
+    /**
+     * Returns the bitboard of the <code>opponent</code> discs flipped when <code>player</code> plays on
+     * <code>square</code>. The result is 0 if the move does not flip anything, i.e. if it is not legal.
+     */
+    static long computeFlips(int square, long player, long opponent) {
+        long moveBit = 1L << square;
+        long flips = 0;
+        for (int direction = 0; direction < DIRECTION_SHIFTS.length; direction++) {
+            long lineFlips = 0;
+            long cursor = shift(moveBit, direction);
+            while ((cursor & opponent) != 0) {
+                lineFlips |= cursor;
+                cursor = shift(cursor, direction);
+            }
+            //the line is only flipped if it is closed by a player disc
+            if ((cursor & player) != 0) {
+                flips |= lineFlips;
+            }
+        }
+        return flips;
+    }
+
     /**
      * Method that returns the char corresponding to the playerToMove value.
      */
@@ -145,17 +331,6 @@ public class OthelloPosition {
         }
     }
 
-    /**
-     * Method that returns an array corresponding to the opposite direction, given in and given by a difference in row
-     * index and a difference in column index.
-     */
-    int[] getOppositeDirection(int rowDifference, int columnDifference) {
-        int[] opposite = new int[2];
-        opposite[0] = OPPOSITE_DIRECTION_VALUES[rowDifference + 1];
-        opposite[1] = OPPOSITE_DIRECTION_VALUES[columnDifference + 1];
-        return opposite;
-    }
-
     /**
      * Method that returns if the parameter index is inside the board. Used when modifying board indexes with both
      * negative or positive values.
@@ -172,36 +347,6 @@ public class OthelloPosition {
         return isInsideBoard(rowIndex) && isInsideBoard(columnIndex);
     }
 
-    /**
-     * Method that returns if a move is possible. It is called by getMoves() when it finds an opponent in the cell
-     * [row,column]. This method calculates the opposite direction and finds if there is a player token in that direction,
-     * making it a valid move.
-     */
-    private boolean isAPossibleMove(char playerChar, int row, int column, int rowDifference, int columnDifference) {
-        //get the opposite direction to the current position
-        int[] oppositeDirections = getOppositeDirection(rowDifference, columnDifference);
-
-        int searchRow = row + oppositeDirections[0];
-        int searchColumn = column + oppositeDirections[1];
-
-        while (isInsideBoard(searchRow, searchColumn)) {
-            char searchCell = board[searchRow][searchColumn];
-            //if we find one of the player token, then it is a possible move
-            if (searchCell == playerChar) {
-                return true;
-            }
-            //if we find an empty cell, it is not a possible move
-            else if (searchCell == 'E') {
-                return false;
-            }
-            //else it is an opponent token, so we need to check further (unless it is outside the board)
-            searchColumn += oppositeDirections[1];
-            searchRow += oppositeDirections[0];
-        }
-        //line full of opponent Discs
-        return false;
-    }
-
 	/* toMove */
 
     /**
@@ -220,84 +365,230 @@ public class OthelloPosition {
      */
     public OthelloPosition makeMove(OthelloAction action)
             throws IllegalMoveException {
+        long flips = getLegalFlips(action);
         OthelloPosition movedPosition = this.clone();
+        movedPosition.applyMove(action.isPassMove() ? PASS : toSquare(action.row, action.column), flips);
+        return movedPosition;
+    }
 
-        if (!action.isPassMove()) {
-            //check if making a move on the board
-            if (!isInsideBoard(action.row) || !isInsideBoard(action.column)) {
-                throw new IllegalMoveException(action);
-            }
+    /**
+     * Makes the move <code>action</code> in place, i.e. it modifies this position instead of creating a new one.
+     * The flipped discs are recorded on the undo stack so that undoMove() can restore the previous position.
+     */
+    public void doMove(OthelloAction action) throws IllegalMoveException {
+        long flips = getLegalFlips(action);
+        pushUndo(action.isPassMove() ? PASS : toSquare(action.row, action.column), flips);
+    }
 
-            //check if making a move on an empty cell
-            char moveCell = board[action.row][action.column];
-            if (moveCell != 'E') {
-                throw new IllegalMoveException(action);
+    /**
+     * Makes in place the move on the bit index <code>square</code>, or a pass move if <code>square</code> is PASS.
+     * Contrary to doMove(OthelloAction), the move is not checked: it must come from getMoveMask().
+     */
+    void doMove(int square) {
+        long flips = 0;
+        if (square != PASS) {
+            flips = computeFlips(square, getPlayerDiscs(), getOpponentDiscs());
+        }
+        pushUndo(square, flips);
+    }
+
+    /**
+     * Restores the position as it was before the last doMove() that has not been undone yet.
+     */
+    public void undoMove() {
+        undoTop--;
+        int square = undoSquares[undoTop];
+        long flips = undoFlips[undoTop];
+        hash = undoHashes[undoTop];
+
+        playerToMove = !playerToMove;
+        if (square != PASS) {
+            long moveBit = 1L << square;
+            if (playerToMove) {
+                whiteDiscs &= ~(moveBit | flips);
+                blackDiscs |= flips;
+            } else {
+                blackDiscs &= ~(moveBit | flips);
+                whiteDiscs |= flips;
+            }
+            if (incrementalEvaluation != null) {
+                incrementalEvaluation.undo(square, flips, playerToMove);
             }
+        }
+    }
+
+    /**
+     * Records a move on the undo stack, allocated the first time it is needed, and applies it.
+     */
+    private void pushUndo(int square, long flips) {
+        if (undoSquares == null) {
+            undoSquares = new int[MAX_UNDO_DEPTH];
+            undoFlips = new long[MAX_UNDO_DEPTH];
+            undoHashes = new long[MAX_UNDO_DEPTH];
+        }
+        undoSquares[undoTop] = square;
+        undoFlips[undoTop] = flips;
+        undoHashes[undoTop] = hash;
+        undoTop++;
+        applyMove(square, flips);
+    }
 
+    /**
+     * Checks that <code>action</code> is legal in this position and returns the discs it flips (0 for a pass move).
+     */
+    private long getLegalFlips(OthelloAction action) throws IllegalMoveException {
+        if (action.isPassMove()) {
+            return 0;
+        }
+        //check if making a move on the board
+        if (!isInsideBoard(action.row) || !isInsideBoard(action.column)) {
+            throw new IllegalMoveException(action);
+        }
 
-            char playerDisc = getPlayerDisc(playerToMove);
-            char opponentDisc = getPlayerDisc(!playerToMove);
-
-            movedPosition.board[action.row][action.column] = playerDisc;
-
-            boolean discsWereConverted = false;
-
-            //for every direction, check if one there is one of the playerToMove Disc
-            for (int rowDifference = -1; rowDifference <= 1; rowDifference++) {
-                for (int columnDifference = -1; columnDifference <= 1; columnDifference++) {
-                    if (!(rowDifference == 0 && columnDifference == 0)) {
-                        int startRow = action.row + rowDifference;
-                        int startColumn = action.column + columnDifference;
-
-                        if (isInsideBoard(startRow, startColumn)) {
-                            //save indexes values for later
-                            int currentRow = startRow;
-                            int currentColumn = startColumn;
-
-                            char startCell = board[currentRow][currentColumn];
-                            //if the cell is empty or if it is the playerToMove Disc, then there is nothing to do
-                            if (startCell != 'E' && startCell != playerDisc) {
-                                //else loop through all opponent Discs
-                                while (isInsideBoard(currentRow, currentColumn) && board[currentRow][currentColumn] == opponentDisc) {
-                                    currentRow += rowDifference;
-                                    currentColumn += columnDifference;
-                                }
-                                //if the last cell is the playerToMove Disc, convert all the Discs in between
-                                if (isInsideBoard(currentRow, currentColumn) && board[currentRow][currentColumn] == playerDisc) {
-                                    int i = startRow;
-                                    int j = startColumn;
-                                    while (isInsideBoard(i, j) && board[i][j] == opponentDisc) {
-                                        discsWereConverted = true;
-                                        movedPosition.board[i][j] = playerDisc;
-                                        i += rowDifference;
-                                        j += columnDifference;
-                                    }
-                                }
-                                //else it is an empty cell, so not a possible move
-
-                            }
-                        }
-                    }
-                }
+        //check if making a move on an empty cell
+        if (((whiteDiscs | blackDiscs) & squareBit(action.row, action.column)) != 0) {
+            throw new IllegalMoveException(action);
+        }
+
+        long flips = computeFlips(toSquare(action.row, action.column), getPlayerDiscs(), getOpponentDiscs());
+        //Illegal move if nothing was converted
+        if (flips == 0) {
+            throw new IllegalMoveException(action);
+        }
+        return flips;
+    }
+
+    /**
+     * Places a disc of the player to move on <code>square</code> (nothing for PASS), flips <code>flips</code> and
+     * gives the move to the other player.
+     */
+    private void applyMove(int square, long flips) {
+        if (square != PASS) {
+            long moveBit = 1L << square;
+            if (playerToMove) {
+                whiteDiscs |= moveBit | flips;
+                blackDiscs &= ~flips;
+                hash ^= WHITE_DISC_KEYS[square];
+            } else {
+                blackDiscs |= moveBit | flips;
+                whiteDiscs &= ~flips;
+                hash ^= BLACK_DISC_KEYS[square];
+            }
+            if (incrementalEvaluation != null) {
+                incrementalEvaluation.play(square, flips, playerToMove);
             }
-            //Illegal move if nothing was converted
-            if (!discsWereConverted) {
-                throw new IllegalMoveException(action);
+            //a flipped disc changes from the opponent color to the player one
+            while (flips != 0) {
+                int flippedSquare = Long.numberOfTrailingZeros(flips);
+                hash ^= WHITE_DISC_KEYS[flippedSquare] ^ BLACK_DISC_KEYS[flippedSquare];
+                flips &= flips - 1;
             }
         }
-        movedPosition.playerToMove = !playerToMove;
-        return movedPosition;
+        playerToMove = !playerToMove;
+        hash ^= WHITE_TO_MOVE_KEY;
+    }
+
+    /**
+     * Attaches <code>evaluation</code> to this position, or detaches the current one if it is null. The evaluation is
+     * computed from the current board, then updated by every doMove() and undoMove().
+     */
+    void setIncrementalEvaluation(IncrementalEvaluation evaluation) {
+        incrementalEvaluation = evaluation;
+        if (evaluation != null) {
+            evaluation.reset(whiteDiscs, blackDiscs);
+        }
+    }
+
+    /**
+     * Returns the evaluation attached to this position, or null if there is none.
+     */
+    IncrementalEvaluation getIncrementalEvaluation() {
+        return incrementalEvaluation;
+    }
+
+    /**
+     * Returns the Zobrist hash of the position.
+     */
+    long getHash() {
+        return hash;
+    }
+
+    /**
+     * Computes the Zobrist hash of the position from scratch. Only needed when the board is set without making moves.
+     */
+    long computeHash() {
+        long computedHash = playerToMove ? WHITE_TO_MOVE_KEY : 0;
+        for (int square = 0; square < 64; square++) {
+            long bit = 1L << square;
+            if ((whiteDiscs & bit) != 0) {
+                computedHash ^= WHITE_DISC_KEYS[square];
+            } else if ((blackDiscs & bit) != 0) {
+                computedHash ^= BLACK_DISC_KEYS[square];
+            }
+        }
+        return computedHash;
+    }
+
+    /**
+     * Returns the symmetry (see BoardSymmetry) that transforms the position into its canonical form, the same for all
+     * the symmetric positions.
+     */
+    int canonicalSymmetry() {
+        return BoardSymmetry.canonicalSymmetry(getPlayerDiscs(), getOpponentDiscs());
+    }
+
+    /**
+     * Returns a new position with the discs transformed by <code>symmetry</code> and the same player to move.
+     */
+    OthelloPosition transform(int symmetry) {
+        return new OthelloPosition(BoardSymmetry.transform(whiteDiscs, symmetry),
+                BoardSymmetry.transform(blackDiscs, symmetry), playerToMove);
+    }
+
+    /**
+     * Returns the canonical form of the position, with the same player to move. The moves found in it are brought back
+     * to the position with transformMove() and the inverse of canonicalSymmetry().
+     */
+    OthelloPosition canonicalPosition() {
+        return transform(canonicalSymmetry());
+    }
+
+    /**
+     * Returns a hash shared by all the symmetric positions, and by the positions with the colors swapped and the other
+     * player to move. Unlike getHash(), it is computed from scratch.
+     */
+    long canonicalHash() {
+        return BoardSymmetry.canonicalHash(getPlayerDiscs(), getOpponentDiscs());
+    }
+
+    /**
+     * Returns <code>move</code> transformed by <code>symmetry</code>, with its value. A pass is returned as is.
+     */
+    static OthelloAction transformMove(OthelloAction move, int symmetry) {
+        if (move.isPassMove()) {
+            return move;
+        }
+        int square = BoardSymmetry.transformSquare(toSquare(move.row, move.column), symmetry);
+        OthelloAction transformedMove = new OthelloAction(squareRow(square), squareColumn(square));
+        transformedMove.setValue(move.getValue());
+        return transformedMove;
+    }
+
+    /**
+     * Returns true if none of the players can move anymore. Otherwise, the player to move has to pass if and only if
+     * getMoveMask() is 0.
+     */
+    boolean isGameOver() {
+        return getMoveMask() == 0 && computeMoveMask(getOpponentDiscs(), getPlayerDiscs()) == 0;
     }
 
+    /**
+     * Returns true if the game is over once <code>action</code> has been played, i.e. if none of the players can
+     * move anymore. The blank action (0,0) returned by an unfinished search is never considered as ending the game.
+     */
     boolean isGameEnded(OthelloAction action) throws IllegalMoveException {
         if (!action.equals(new OthelloAction(0,0))) {
-            OthelloPosition newPosition = this.clone();
-            newPosition.makeMove(action);
-            if (newPosition.getMoves().isEmpty()) {
-                if (newPosition.makeMove(new OthelloAction(0, 0, true)).getMoves().isEmpty()) {
-                    return true;
-                }
-            }
+            return this.makeMove(action).isGameOver();
         }
         return false;
 
@@ -309,9 +600,9 @@ public class OthelloPosition {
     protected OthelloPosition clone() {
         OthelloPosition newPosition = new OthelloPosition();
         newPosition.playerToMove = playerToMove;
-        for (int i = 0; i < BOARD_SIZE + 2; i++)
-            for (int j = 0; j < BOARD_SIZE + 2; j++)
-                newPosition.board[i][j] = board[i][j];
+        newPosition.whiteDiscs = whiteDiscs;
+        newPosition.blackDiscs = blackDiscs;
+        newPosition.hash = hash;
         return newPosition;
     }
 
@@ -330,9 +621,10 @@ public class OthelloPosition {
         for (int i = 1; i <= BOARD_SIZE; i++) {
             System.out.print(" " + i + " ");
             for (int j = 1; j <= BOARD_SIZE; j++) {
-                if (board[i][j] == 'W') {
+                char cell = getCell(i, j);
+                if (cell == 'W') {
                     System.out.print("| 0 ");
-                } else if (board[i][j] == 'B') {
+                } else if (cell == 'B') {
                     System.out.print("| X ");
                 } else {
                     System.out.print("|   ");
@@ -356,27 +648,41 @@ public class OthelloPosition {
     }
 
     public String toString() {
-        String s = "";
-        char c, d;
+        StringBuilder s = new StringBuilder(65);
         if (playerToMove) {
-            s += "W";
+            s.append('W');
         } else {
-            s += "B";
+            s.append('B');
         }
-        for (int i = 1; i <= 8; i++) {
-            for (int j = 1; j <= 8; j++) {
-                d = board[i][j];
-                if (d == 'W') {
-                    c = 'O';
-                } else if (d == 'B') {
-                    c = 'X';
-                } else {
-                    c = 'E';
-                }
-                s += c;
+        for (int square = 0; square < 64; square++) {
+            long bit = 1L << square;
+            if ((whiteDiscs & bit) != 0) {
+                s.append('O');
+            } else if ((blackDiscs & bit) != 0) {
+                s.append('X');
+            } else {
+                s.append('E');
             }
         }
-        return s;
+        return s.toString();
+    }
+
+    /**
+     * Two positions are equal if they have the same discs and the same player to move.
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof OthelloPosition)) return false;
+
+        OthelloPosition otherPosition = (OthelloPosition) other;
+        return otherPosition.whiteDiscs == whiteDiscs && otherPosition.blackDiscs == blackDiscs
+                && otherPosition.playerToMove == playerToMove;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
     }
 
 }
@@ -0,0 +1,49 @@
+/**
+ * Measures the speedup of LazySmpSearch against its number of threads: every position of PositionSuite is searched
+ * by iterative deepening up to a fixed depth, with 1, 2, 4... threads up to the given maximum, and the total time of
+ * each thread number is compared to the time with a single thread.
+ *
+ * Usage: java ParallelSpeedup [max_threads] [depth]
+ */
+public class ParallelSpeedup {
+    private static final int TRANSPOSITION_TABLE_MEGABYTES = 64;
+
+    public static void main(String[] args) throws IllegalMoveException, OutOfTimeException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        String[] positions = PositionSuite.all();
+
+        //warm up the JIT compiler so that the single thread time is not overestimated
+        searchSuite(positions, 1, Math.min(depth, 6));
+
+        long singleThreadTime = 0;
+        System.out.println("threads | time (ms) | speedup");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            long time = searchSuite(positions, threads, depth);
+            if (threads == 1) {
+                singleThreadTime = time;
+            }
+            System.out.printf("%7d | %9d | %.2f%n", threads, time, (double) singleThreadTime / Math.max(1, time));
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds taken to search all the positions up to <code>depth</code>.
+     */
+    private static long searchSuite(String[] positions, int threads, int depth)
+            throws IllegalMoveException, OutOfTimeException {
+        long start = System.currentTimeMillis();
+        for (String positionString : positions) {
+            OthelloPosition position = new OthelloPosition(positionString);
+            LazySmpSearch search = new LazySmpSearch(threads, Long.MAX_VALUE);
+            search.setEvaluator(new BoardEvaluator());
+            search.setTranspositionTable(new TranspositionTable(TRANSPOSITION_TABLE_MEGABYTES));
+            for (int currentDepth = 1; currentDepth <= depth; currentDepth++) {
+                search.setSearchDepth(currentDepth);
+                search.evaluate(position);
+            }
+            search.shutdown();
+        }
+        return System.currentTimeMillis() - start;
+    }
+}
@@ -0,0 +1,519 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Class that implements an evaluator based on patterns: lines and corner regions of the board whose content, read as
+ * a base 3 number (empty 0, player to move 1, opponent 2), is the index of a precomputed weight. Each pattern is
+ * evaluated at all its positions on the board, i.e. on the board transformed by the symmetries that give a new set of
+ * cells (see BoardSymmetry), so the evaluation is a fixed number of table lookups and additions, without any per-disc
+ * analysis as in BoardEvaluator.
+ *
+ * The weights depend on the game phase, given by the number of discs, and are in 1/SCORE_SCALE discs of final disc
+ * differential for the player to move. They are read from a binary file written by PatternTableGenerator:
+ * - header: the ints MAGIC, PHASE_COUNT and PATTERN_COUNT
+ * - for each phase and each pattern, the 3^size short weights of the pattern, in big-endian
+ * Without file, the weights are derived from BoardEvaluator.staticSquareScore().
+ *
+ * When a PatternEvaluation is attached to the position, the pattern indexes are not computed from the board but
+ * updated at each move, for the cells that changed. Running with -Dothello.verifyEvaluation=true checks every such
+ * evaluation against a computation from the board.
+ */
+public class PatternEvaluator implements IncrementalEvaluator {
+    /**
+     * File read by Othello and OthelloDaemon if it exists, in the directory they are run from.
+     */
+    static final String DEFAULT_FILE = "othello.patterns";
+
+    /**
+     * Patterns, in the orientation of their first position. Rows are numbered from 1, the upper one.
+     */
+    static final int EDGE = 0;          //row 1
+    static final int CORNER_3X3 = 1;    //3x3 upper left square
+    static final int CORNER_2X5 = 2;    //first 5 cells of rows 1 and 2
+    static final int ROW_2 = 3;
+    static final int ROW_3 = 4;
+    static final int ROW_4 = 5;
+    static final int DIAGONAL_8 = 6;    //diagonal from the upper left corner
+    static final int DIAGONAL_7 = 7;    //diagonals ending in column 8, above DIAGONAL_8
+    static final int DIAGONAL_6 = 8;
+    static final int DIAGONAL_5 = 9;
+    static final int DIAGONAL_4 = 10;
+    static final int PATTERN_COUNT = 11;
+
+    /**
+     * Number of cells of each pattern.
+     */
+    static final int[] PATTERN_SIZES = {8, 9, 10, 8, 8, 8, 8, 7, 6, 5, 4};
+
+    static final int PHASE_COUNT = 13;
+    private static final int DISCS_PER_PHASE = 5;
+
+    /**
+     * Weight units per disc.
+     */
+    static final int SCORE_SCALE = 8;
+
+    private static final int MAGIC = 0x50415454;
+    private static final boolean VERIFY_INCREMENTAL_EVALUATION = Boolean.getBoolean("othello.verifyEvaluation");
+    private static final long MAIN_DIAGONAL = 0x8040201008040201L;
+
+    /**
+     * Value in base 3 of the binary number i, i.e. the index of a line whose cells set in i are 1 and others 0.
+     */
+    private static final int[] BINARY_TO_BASE_3 = new int[256];
+
+    /**
+     * For each symmetry, the patterns evaluated on the board transformed by it.
+     */
+    static final int[][] SYMMETRY_PATTERNS = new int[BoardSymmetry.SYMMETRY_COUNT][];
+
+    /**
+     * Number of pattern instances evaluated, i.e. of table lookups per evaluation.
+     */
+    static final int INSTANCE_COUNT;
+
+    /**
+     * Pattern of each instance, the instances being numbered in the order of SYMMETRY_PATTERNS.
+     */
+    private static final int[] INSTANCE_PATTERNS;
+
+    /**
+     * For each square of the board, the instances containing it and the power of 3 of the square in their index.
+     */
+    private static final int[][] SQUARE_INSTANCES = new int[64][];
+    private static final int[][] SQUARE_POWERS = new int[64][];
+
+    static {
+        for (int bits = 0; bits < 256; bits++) {
+            int power = 1;
+            for (int bit = 0; bit < 8; bit++) {
+                if ((bits & (1 << bit)) != 0) {
+                    BINARY_TO_BASE_3[bits] += power;
+                }
+                power *= 3;
+            }
+        }
+
+        //keep the symmetries that place each pattern on a new set of cells
+        int[][] patterns = new int[BoardSymmetry.SYMMETRY_COUNT][PATTERN_COUNT];
+        int[] patternCounts = new int[BoardSymmetry.SYMMETRY_COUNT];
+        for (int pattern = 0; pattern < PATTERN_COUNT; pattern++) {
+            long[] instanceCells = new long[BoardSymmetry.SYMMETRY_COUNT];
+            int instanceCount = 0;
+            for (int symmetry = 0; symmetry < BoardSymmetry.SYMMETRY_COUNT; symmetry++) {
+                long cells = BoardSymmetry.transform(patternCells(pattern), BoardSymmetry.inverse(symmetry));
+                boolean isNew = true;
+                for (int i = 0; i < instanceCount; i++) {
+                    isNew &= instanceCells[i] != cells;
+                }
+                if (isNew) {
+                    instanceCells[instanceCount++] = cells;
+                    patterns[symmetry][patternCounts[symmetry]++] = pattern;
+                }
+            }
+        }
+        int instanceCount = 0;
+        for (int symmetry = 0; symmetry < BoardSymmetry.SYMMETRY_COUNT; symmetry++) {
+            SYMMETRY_PATTERNS[symmetry] = Arrays.copyOf(patterns[symmetry], patternCounts[symmetry]);
+            instanceCount += patternCounts[symmetry];
+        }
+        INSTANCE_COUNT = instanceCount;
+
+        INSTANCE_PATTERNS = new int[INSTANCE_COUNT];
+        int[][] squareInstances = new int[64][INSTANCE_COUNT];
+        int[][] squarePowers = new int[64][INSTANCE_COUNT];
+        int[] squareInstanceCounts = new int[64];
+        int instance = 0;
+        for (int symmetry = 0; symmetry < BoardSymmetry.SYMMETRY_COUNT; symmetry++) {
+            for (int pattern : SYMMETRY_PATTERNS[symmetry]) {
+                INSTANCE_PATTERNS[instance] = pattern;
+                int power = 1;
+                for (int patternSquare : patternSquares(pattern)) {
+                    //the cell of the transformed board read by the pattern comes from this square of the board
+                    int square = BoardSymmetry.transformSquare(patternSquare, BoardSymmetry.inverse(symmetry));
+                    squareInstances[square][squareInstanceCounts[square]] = instance;
+                    squarePowers[square][squareInstanceCounts[square]] = power;
+                    squareInstanceCounts[square]++;
+                    power *= 3;
+                }
+                instance++;
+            }
+        }
+        for (int square = 0; square < 64; square++) {
+            SQUARE_INSTANCES[square] = Arrays.copyOf(squareInstances[square], squareInstanceCounts[square]);
+            SQUARE_POWERS[square] = Arrays.copyOf(squarePowers[square], squareInstanceCounts[square]);
+        }
+    }
+
+    /**
+     * weights[phase][pattern][index]
+     */
+    private final short[][][] weights;
+
+    /**
+     * Creates an evaluator whose weights are derived from BoardEvaluator.staticSquareScore(): the weight of a pattern
+     * index is the sum of the square scores of its player discs minus the ones of its opponent discs, each square
+     * score being shared between the patterns covering the square.
+     */
+    public PatternEvaluator() {
+        weights = newWeights();
+        int[] coverage = new int[64];
+        for (int symmetry = 0; symmetry < BoardSymmetry.SYMMETRY_COUNT; symmetry++) {
+            for (int pattern : SYMMETRY_PATTERNS[symmetry]) {
+                long cells = BoardSymmetry.transform(patternCells(pattern), BoardSymmetry.inverse(symmetry));
+                for (int square = 0; square < 64; square++) {
+                    if ((cells & (1L << square)) != 0) {
+                        coverage[square]++;
+                    }
+                }
+            }
+        }
+        //the square scores and the coverage are the same for all the orientations of a pattern
+        for (int pattern = 0; pattern < PATTERN_COUNT; pattern++) {
+            int[] squares = patternSquares(pattern);
+            short[] patternWeights = weights[0][pattern];
+            for (int index = 0; index < patternWeights.length; index++) {
+                double weight = 0;
+                int remainingIndex = index;
+                for (int square : squares) {
+                    int cell = remainingIndex % 3;
+                    remainingIndex /= 3;
+                    if (cell != 0) {
+                        double squareScore = (double) SCORE_SCALE * BoardEvaluator.staticSquareScore(
+                                OthelloPosition.squareRow(square), OthelloPosition.squareColumn(square))
+                                / coverage[square];
+                        weight += cell == 1 ? squareScore : -squareScore;
+                    }
+                }
+                patternWeights[index] = (short) Math.round(weight);
+            }
+            for (int phase = 1; phase < PHASE_COUNT; phase++) {
+                weights[phase][pattern] = patternWeights;
+            }
+        }
+    }
+
+    /**
+     * Creates an evaluator with the weights of <code>in</code>, in the format of the class description.
+     */
+    public PatternEvaluator(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readInt() != PHASE_COUNT || data.readInt() != PATTERN_COUNT) {
+            throw new IOException("not a pattern table file of this version");
+        }
+        weights = newWeights();
+        for (short[][] phaseWeights : weights) {
+            for (short[] patternWeights : phaseWeights) {
+                for (int index = 0; index < patternWeights.length; index++) {
+                    patternWeights[index] = data.readShort();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an evaluator with the given weights, see PatternTableGenerator.
+     */
+    PatternEvaluator(short[][][] weights) {
+        this.weights = weights;
+    }
+
+    /**
+     * Returns the evaluator of the pattern table file <code>fileName</code>, or null if there is no readable file.
+     */
+    static PatternEvaluator loadIfExists(String fileName) {
+        Path file = Paths.get(fileName);
+        if (!Files.isReadable(file)) {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return new PatternEvaluator(in);
+        } catch (IOException exception) {
+            System.err.println("Pattern tables not used: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the weights to <code>out</code>, in the format of the class description.
+     */
+    void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(PHASE_COUNT);
+        data.writeInt(PATTERN_COUNT);
+        for (short[][] phaseWeights : weights) {
+            for (short[] patternWeights : phaseWeights) {
+                for (short weight : patternWeights) {
+                    data.writeShort(weight);
+                }
+            }
+        }
+        data.flush();
+    }
+
+    @Override
+    public IncrementalEvaluation newEvaluation() {
+        return new PatternEvaluation();
+    }
+
+    @Override
+    public int evaluate(OthelloPosition position) {
+        int score;
+        IncrementalEvaluation evaluation = position.getIncrementalEvaluation();
+        if (evaluation instanceof PatternEvaluation) {
+            score = ((PatternEvaluation) evaluation).score(weights, position.playerToMove);
+            if (VERIFY_INCREMENTAL_EVALUATION && score != scoreBoard(position)) {
+                throw new IllegalStateException("incremental pattern evaluation " + score + " instead of "
+                        + scoreBoard(position) + " for " + position);
+            }
+        } else {
+            score = scoreBoard(position);
+        }
+        //the weights are for the player to move, the evaluation for white
+        return position.playerToMove ? score : -score;
+    }
+
+    /**
+     * Returns the score of <code>position</code> for the player to move, computed from the board.
+     */
+    private int scoreBoard(OthelloPosition position) {
+        long player = position.getPlayerDiscs();
+        long opponent = position.getOpponentDiscs();
+        short[][] phaseWeights = weights[phase(player | opponent)];
+        int score = 0;
+        for (int symmetry = 0; symmetry < BoardSymmetry.SYMMETRY_COUNT; symmetry++) {
+            long transformedPlayer = BoardSymmetry.transform(player, symmetry);
+            long transformedOpponent = BoardSymmetry.transform(opponent, symmetry);
+            for (int pattern : SYMMETRY_PATTERNS[symmetry]) {
+                score += phaseWeights[pattern][patternIndex(pattern, transformedPlayer, transformedOpponent)];
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Pattern indexes of all the instances, for both players: whiteIndexes are the indexes used when white has the
+     * move (white cells are 1 and black ones 2), blackIndexes when black has it.
+     */
+    static class PatternEvaluation implements IncrementalEvaluation {
+        private final int[] whiteIndexes = new int[INSTANCE_COUNT];
+        private final int[] blackIndexes = new int[INSTANCE_COUNT];
+        private int discCount;
+
+        @Override
+        public void reset(long whiteDiscs, long blackDiscs) {
+            int instance = 0;
+            for (int symmetry = 0; symmetry < BoardSymmetry.SYMMETRY_COUNT; symmetry++) {
+                long transformedWhite = BoardSymmetry.transform(whiteDiscs, symmetry);
+                long transformedBlack = BoardSymmetry.transform(blackDiscs, symmetry);
+                for (int pattern : SYMMETRY_PATTERNS[symmetry]) {
+                    whiteIndexes[instance] = patternIndex(pattern, transformedWhite, transformedBlack);
+                    blackIndexes[instance] = patternIndex(pattern, transformedBlack, transformedWhite);
+                    instance++;
+                }
+            }
+            discCount = Long.bitCount(whiteDiscs | blackDiscs);
+        }
+
+        @Override
+        public void play(int square, long flips, boolean white) {
+            update(square, flips, white, 1);
+            discCount++;
+        }
+
+        @Override
+        public void undo(int square, long flips, boolean white) {
+            update(square, flips, white, -1);
+            discCount--;
+        }
+
+        /**
+         * Adds (<code>sign</code> 1) or removes (-1) the changes of a move of white (or black) on <code>square</code>
+         * flipping <code>flips</code>: the square goes from empty (0) to the player (1 in the indexes of the player,
+         * 2 in the other ones), and each flipped disc from 2 to 1 in the indexes of the player, 1 to 2 in the others.
+         */
+        private void update(int square, long flips, boolean white, int sign) {
+            int[] playerIndexes = white ? whiteIndexes : blackIndexes;
+            int[] opponentIndexes = white ? blackIndexes : whiteIndexes;
+            int[] instances = SQUARE_INSTANCES[square];
+            int[] powers = SQUARE_POWERS[square];
+            for (int i = 0; i < instances.length; i++) {
+                playerIndexes[instances[i]] += sign * powers[i];
+                opponentIndexes[instances[i]] += 2 * sign * powers[i];
+            }
+            while (flips != 0) {
+                int flippedSquare = Long.numberOfTrailingZeros(flips);
+                flips &= flips - 1;
+                instances = SQUARE_INSTANCES[flippedSquare];
+                powers = SQUARE_POWERS[flippedSquare];
+                for (int i = 0; i < instances.length; i++) {
+                    playerIndexes[instances[i]] -= sign * powers[i];
+                    opponentIndexes[instances[i]] += sign * powers[i];
+                }
+            }
+        }
+
+        /**
+         * Returns the score for the player to move, white if <code>whiteToMove</code>, with <code>weights</code>.
+         */
+        int score(short[][][] weights, boolean whiteToMove) {
+            int[] indexes = whiteToMove ? whiteIndexes : blackIndexes;
+            short[][] phaseWeights = weights[phaseOfDiscCount(discCount)];
+            int score = 0;
+            for (int instance = 0; instance < INSTANCE_COUNT; instance++) {
+                score += phaseWeights[INSTANCE_PATTERNS[instance]][indexes[instance]];
+            }
+            return score;
+        }
+    }
+
+    /**
+     * Returns the game phase of a board whose discs are <code>discs</code>.
+     */
+    static int phase(long discs) {
+        return phaseOfDiscCount(Long.bitCount(discs));
+    }
+
+    private static int phaseOfDiscCount(int discCount) {
+        return Math.min(PHASE_COUNT - 1, (discCount - 4) / DISCS_PER_PHASE);
+    }
+
+    /**
+     * Returns the weight index of <code>pattern</code> in its first orientation, on the board made of the discs
+     * <code>player</code> and <code>opponent</code>.
+     */
+    static int patternIndex(int pattern, long player, long opponent) {
+        switch (pattern) {
+            case EDGE:
+                return lineIndex(player, opponent, 0, 0xFF);
+            case CORNER_3X3:
+                return lineIndex(player, opponent, 0, 0x7) + 27 * lineIndex(player, opponent, 8, 0x7)
+                        + 729 * lineIndex(player, opponent, 16, 0x7);
+            case CORNER_2X5:
+                return lineIndex(player, opponent, 0, 0x1F) + 243 * lineIndex(player, opponent, 8, 0x1F);
+            case ROW_2:
+                return lineIndex(player, opponent, 8, 0xFF);
+            case ROW_3:
+                return lineIndex(player, opponent, 16, 0xFF);
+            case ROW_4:
+                return lineIndex(player, opponent, 24, 0xFF);
+            default:
+                int length = PATTERN_SIZES[pattern];
+                return BINARY_TO_BASE_3[diagonalBits(player, length)]
+                        + 2 * BINARY_TO_BASE_3[diagonalBits(opponent, length)];
+        }
+    }
+
+    /**
+     * Returns the base 3 index of the cells <code>mask</code> of the row starting at bit <code>shift</code>.
+     */
+    private static int lineIndex(long player, long opponent, int shift, int mask) {
+        return BINARY_TO_BASE_3[(int) (player >>> shift) & mask] + 2 * BINARY_TO_BASE_3[(int) (opponent >>> shift) & mask];
+    }
+
+    /**
+     * Returns the bits of the diagonal of <code>length</code> cells ending in the upper right part of the board, from
+     * its upper cell. The multiplication moves every cell of the diagonal to a different bit of the last row, without
+     * carry.
+     */
+    private static int diagonalBits(long bits, int length) {
+        int column = 8 - length;
+        long diagonal = (MAIN_DIAGONAL << column) & diagonalMask(column);
+        return (int) (((bits & diagonal) * 0x0101010101010101L) >>> (56 + column));
+    }
+
+    /**
+     * Returns the mask of the columns from <code>column</code> (0 based) to the last one, which removes the cells of
+     * the shifted main diagonal that wrapped to the next row.
+     */
+    private static long diagonalMask(int column) {
+        return 0x0101010101010101L * ((0xFF << column) & 0xFF);
+    }
+
+    /**
+     * Returns the cells of <code>pattern</code> in its first orientation.
+     */
+    static long patternCells(int pattern) {
+        long cells = 0;
+        for (int square : patternSquares(pattern)) {
+            cells |= 1L << square;
+        }
+        return cells;
+    }
+
+    /**
+     * Returns the squares of <code>pattern</code> in its first orientation, in the order of the digits of its index
+     * from the least significant one.
+     */
+    static int[] patternSquares(int pattern) {
+        switch (pattern) {
+            case EDGE:
+                return rowSquares(0, 8);
+            case CORNER_3X3:
+                return concat(rowSquares(0, 3), rowSquares(8, 3), rowSquares(16, 3));
+            case CORNER_2X5:
+                return concat(rowSquares(0, 5), rowSquares(8, 5));
+            case ROW_2:
+                return rowSquares(8, 8);
+            case ROW_3:
+                return rowSquares(16, 8);
+            case ROW_4:
+                return rowSquares(24, 8);
+            default:
+                int length = PATTERN_SIZES[pattern];
+                int[] squares = new int[length];
+                for (int i = 0; i < length; i++) {
+                    squares[i] = i * 9 + 8 - length;
+                }
+                return squares;
+        }
+    }
+
+    private static int[] rowSquares(int firstSquare, int length) {
+        int[] squares = new int[length];
+        for (int i = 0; i < length; i++) {
+            squares[i] = firstSquare + i;
+        }
+        return squares;
+    }
+
+    private static int[] concat(int[]... parts) {
+        int length = 0;
+        for (int[] part : parts) {
+            length += part.length;
+        }
+        int[] squares = new int[length];
+        int i = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, squares, i, part.length);
+            i += part.length;
+        }
+        return squares;
+    }
+
+    /**
+     * Returns new zero weights for all the phases and patterns.
+     */
+    static short[][][] newWeights() {
+        short[][][] weights = new short[PHASE_COUNT][PATTERN_COUNT][];
+        for (short[][] phaseWeights : weights) {
+            for (int pattern = 0; pattern < PATTERN_COUNT; pattern++) {
+                int size = 1;
+                for (int cell = 0; cell < PATTERN_SIZES[pattern]; cell++) {
+                    size *= 3;
+                }
+                phaseWeights[pattern] = new short[size];
+            }
+        }
+        return weights;
+    }
+}
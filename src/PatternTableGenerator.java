@@ -0,0 +1,224 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Builds the weight tables of PatternEvaluator. Self-play games are played from random openings, with a fixed depth
+ * AlphaBeta search using BoardEvaluator and with the EndgameSolver close to the end, and every position of a game is
+ * labelled with the final disc differential of the game. The weights of each phase are then fitted to the labels by
+ * stochastic gradient descent on the squared error, and written in the binary format read by PatternEvaluator.
+ *
+ * Usage: java PatternTableGenerator [table_file] [games] [depth]
+ */
+public class PatternTableGenerator {
+    private static final int DEFAULT_GAMES = 2000;
+    private static final int DEFAULT_DEPTH = 4;
+
+    /**
+     * Number of random moves at the beginning of each game, so that the games are all different.
+     */
+    private static final int RANDOM_PLIES = 10;
+
+    /**
+     * Under this number of empty cells, the games are played perfectly by the EndgameSolver.
+     */
+    private static final int SOLVED_EMPTIES = 12;
+
+    private static final int EPOCHS = 10;
+
+    /**
+     * Step of the gradient descent, divided by the number of pattern instances which all move the prediction.
+     */
+    private static final double LEARNING_RATE = 0.1 / PatternEvaluator.INSTANCE_COUNT;
+
+    private static final int TRANSPOSITION_TABLE_MEGABYTES = 16;
+
+    private final Random random = new Random(0x5EED);
+
+    /**
+     * The samples: discs of the player to move, of its opponent, colour of the player to move and final disc
+     * differential for the player to move.
+     */
+    private long[] players = new long[1 << 16];
+    private long[] opponents = new long[1 << 16];
+    private boolean[] whiteToMove = new boolean[1 << 16];
+    private int[] results = new int[1 << 16];
+    private int sampleCount;
+
+    public static void main(String[] args) throws IOException, IllegalMoveException, OutOfTimeException {
+        String fileName = args.length > 0 ? args[0] : PatternEvaluator.DEFAULT_FILE;
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_GAMES;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH;
+
+        long startTime = System.currentTimeMillis();
+        PatternTableGenerator generator = new PatternTableGenerator();
+        for (int game = 0; game < games; game++) {
+            generator.playGame(depth);
+        }
+        System.out.println(generator.sampleCount + " positions from " + games + " games in "
+                + (System.currentTimeMillis() - startTime) / 1000 + " s");
+
+        PatternEvaluator evaluator = new PatternEvaluator(generator.train());
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(fileName))) {
+            evaluator.write(out);
+        }
+        System.out.println("Pattern tables written to " + fileName + " in "
+                + (System.currentTimeMillis() - startTime) / 1000 + " s");
+    }
+
+    /**
+     * Plays a self-play game and adds its positions to the samples.
+     */
+    private void playGame(int depth) throws IllegalMoveException, OutOfTimeException {
+        AlphaBeta moveChooser = new AlphaBeta(Long.MAX_VALUE);
+        moveChooser.setEvaluator(new BoardEvaluator());
+        moveChooser.setTranspositionTable(new TranspositionTable(TRANSPOSITION_TABLE_MEGABYTES));
+        moveChooser.setSearchDepth(depth);
+        EndgameSolver solver = new EndgameSolver(EndgameSolver.Mode.EXACT, Long.MAX_VALUE);
+
+        OthelloPosition position = new OthelloPosition();
+        position.initialize();
+        int firstSample = sampleCount;
+        int ply = 0;
+        while (true) {
+            long moveMask = position.getMoveMask();
+            if (moveMask == 0) {
+                if (position.isGameOver()) {
+                    break;
+                }
+                position.doMove(OthelloPosition.PASS);
+                continue;
+            }
+            addSample(position);
+
+            OthelloAction move;
+            if (ply++ < RANDOM_PLIES) {
+                move = randomMove(moveMask);
+            } else if (position.countEmpties() <= SOLVED_EMPTIES) {
+                move = solver.evaluate(position);
+            } else {
+                move = moveChooser.evaluate(position);
+            }
+            position.doMove(OthelloPosition.toSquare(move.row, move.column));
+        }
+
+        int whiteResult = finalDiscDifferential(position);
+        for (int sample = firstSample; sample < sampleCount; sample++) {
+            results[sample] = whiteToMove[sample] ? whiteResult : -whiteResult;
+        }
+    }
+
+    private OthelloAction randomMove(long moveMask) {
+        int moveIndex = random.nextInt(Long.bitCount(moveMask));
+        for (int i = 0; i < moveIndex; i++) {
+            moveMask &= moveMask - 1;
+        }
+        int square = Long.numberOfTrailingZeros(moveMask);
+        return new OthelloAction(OthelloPosition.squareRow(square), OthelloPosition.squareColumn(square));
+    }
+
+    /**
+     * Returns the final disc differential for white, the empty cells going to the winner as in the EndgameSolver.
+     */
+    private static int finalDiscDifferential(OthelloPosition position) {
+        int differential = position.countDiscs(true) - position.countDiscs(false);
+        if (differential > 0) {
+            differential += position.countEmpties();
+        } else if (differential < 0) {
+            differential -= position.countEmpties();
+        }
+        return differential;
+    }
+
+    private void addSample(OthelloPosition position) {
+        if (sampleCount == players.length) {
+            players = Arrays.copyOf(players, sampleCount * 2);
+            opponents = Arrays.copyOf(opponents, sampleCount * 2);
+            whiteToMove = Arrays.copyOf(whiteToMove, sampleCount * 2);
+            results = Arrays.copyOf(results, sampleCount * 2);
+        }
+        players[sampleCount] = position.getPlayerDiscs();
+        opponents[sampleCount] = position.getOpponentDiscs();
+        whiteToMove[sampleCount] = position.playerToMove;
+        sampleCount++;
+    }
+
+    /**
+     * Fits the weights of all the phases to the samples and returns them, rounded to PatternEvaluator units.
+     */
+    private short[][][] train() {
+        short[][][] weights = PatternEvaluator.newWeights();
+        double[][][] fittedWeights = new double[weights.length][PatternEvaluator.PATTERN_COUNT][];
+        for (int phase = 0; phase < weights.length; phase++) {
+            for (int pattern = 0; pattern < PatternEvaluator.PATTERN_COUNT; pattern++) {
+                fittedWeights[phase][pattern] = new double[weights[phase][pattern].length];
+            }
+        }
+
+        int[] order = new int[sampleCount];
+        for (int sample = 0; sample < sampleCount; sample++) {
+            order[sample] = sample;
+        }
+        int[] patterns = new int[PatternEvaluator.INSTANCE_COUNT];
+        int[] indexes = new int[PatternEvaluator.INSTANCE_COUNT];
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            shuffle(order);
+            double squaredError = 0;
+            for (int sample : order) {
+                int instanceCount = computeIndexes(players[sample], opponents[sample], patterns, indexes);
+                double[][] phaseWeights = fittedWeights[PatternEvaluator.phase(players[sample] | opponents[sample])];
+                double prediction = 0;
+                for (int i = 0; i < instanceCount; i++) {
+                    prediction += phaseWeights[patterns[i]][indexes[i]];
+                }
+                double error = results[sample] - prediction;
+                squaredError += error * error;
+                for (int i = 0; i < instanceCount; i++) {
+                    phaseWeights[patterns[i]][indexes[i]] += LEARNING_RATE * error;
+                }
+            }
+            System.out.printf("epoch %d: mean error %.2f discs%n", epoch, Math.sqrt(squaredError / sampleCount));
+        }
+
+        for (int phase = 0; phase < weights.length; phase++) {
+            for (int pattern = 0; pattern < PatternEvaluator.PATTERN_COUNT; pattern++) {
+                for (int index = 0; index < weights[phase][pattern].length; index++) {
+                    long weight = Math.round(fittedWeights[phase][pattern][index] * PatternEvaluator.SCORE_SCALE);
+                    weights[phase][pattern][index] =
+                            (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, weight));
+                }
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Fills <code>patterns</code> and <code>indexes</code> with the pattern and weight index of every pattern
+     * instance of the board, as evaluated by PatternEvaluator, and returns the number of instances.
+     */
+    private static int computeIndexes(long player, long opponent, int[] patterns, int[] indexes) {
+        int instanceCount = 0;
+        for (int symmetry = 0; symmetry < BoardSymmetry.SYMMETRY_COUNT; symmetry++) {
+            long transformedPlayer = BoardSymmetry.transform(player, symmetry);
+            long transformedOpponent = BoardSymmetry.transform(opponent, symmetry);
+            for (int pattern : PatternEvaluator.SYMMETRY_PATTERNS[symmetry]) {
+                patterns[instanceCount] = pattern;
+                indexes[instanceCount] = PatternEvaluator.patternIndex(pattern, transformedPlayer, transformedOpponent);
+                instanceCount++;
+            }
+        }
+        return instanceCount;
+    }
+
+    private void shuffle(int[] order) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swapped = order[i];
+            order[i] = order[j];
+            order[j] = swapped;
+        }
+    }
+}
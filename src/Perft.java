@@ -0,0 +1,114 @@
+import java.util.LinkedList;
+
+/**
+ * Counts the leaf nodes of the game tree to a given depth from a position (perft), to check the move generation and
+ * measure its speed. A pass is a move, made only when the player to move has no legal move, and a finished game is a
+ * leaf, whatever the remaining depth.
+ *
+ * From the start position, the counts are checked against the reference values of START_POSITION_COUNTS. With
+ * -api, the tree is also counted with getMoves() and makeMove() instead of the bitboards, and both counts must be equal.
+ *
+ * Usage: java Perft [-api] [depth] [position]
+ */
+public class Perft {
+    /**
+     * Leaf counts from the start position, for the depths 1 to 10.
+     */
+    static final long[] START_POSITION_COUNTS = {4, 12, 56, 244, 1396, 8200, 55092, 390216, 3005288, 24571284};
+
+    public static void main(String[] args) throws IllegalMoveException {
+        boolean checkApi = args.length > 0 && args[0].equals("-api");
+        int argumentIndex = checkApi ? 1 : 0;
+        int maxDepth = args.length > argumentIndex ? Integer.parseInt(args[argumentIndex]) : 9;
+        String positionString = args.length > argumentIndex + 1 ? args[argumentIndex + 1] : PositionSuite.START;
+        OthelloPosition position = new OthelloPosition(positionString);
+        boolean isStartPosition = positionString.equals(PositionSuite.START);
+
+        boolean allCorrect = true;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            long start = System.nanoTime();
+            long count = perft(position, depth);
+            long time = System.nanoTime() - start;
+
+            String check = "";
+            if (isStartPosition && depth <= START_POSITION_COUNTS.length) {
+                boolean correct = count == START_POSITION_COUNTS[depth - 1];
+                check = correct ? "ok" : "WRONG, expected " + START_POSITION_COUNTS[depth - 1];
+                allCorrect &= correct;
+            }
+            if (checkApi) {
+                long apiCount = perftApi(position, depth);
+                boolean correct = count == apiCount;
+                check += (correct ? " api ok" : " API WRONG: " + apiCount);
+                allCorrect &= correct;
+            }
+            System.out.printf("depth %2d: %12d leaves %8d ms %12.0f nodes/s %s%n", depth, count, time / 1000000,
+                    count / Math.max(1e-9, time / 1e9), check);
+        }
+        if (!allCorrect) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the number of leaves of the tree of <code>position</code> to <code>depth</code>, using the bitboard
+     * move generation and the in place moves of the search.
+     */
+    static long perft(OthelloPosition position, int depth) {
+        OthelloPosition searched = position.clone();
+        return perftInPlace(searched, depth);
+    }
+
+    private static long perftInPlace(OthelloPosition position, int depth) {
+        long moveMask = position.getMoveMask();
+        if (moveMask == 0) {
+            if (position.isGameOver()) {
+                //the game is over
+                return 1;
+            }
+            if (depth == 1) {
+                return 1;
+            }
+            position.doMove(OthelloPosition.PASS);
+            long count = perftInPlace(position, depth - 1);
+            position.undoMove();
+            return count;
+        }
+        //the leaves under the last level are the moves themselves
+        if (depth == 1) {
+            return Long.bitCount(moveMask);
+        }
+        long count = 0;
+        while (moveMask != 0) {
+            int square = Long.numberOfTrailingZeros(moveMask);
+            moveMask &= moveMask - 1;
+            position.doMove(square);
+            count += perftInPlace(position, depth - 1);
+            position.undoMove();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the same count as perft(), using getMoves() and makeMove() as the original players of the assignment.
+     */
+    static long perftApi(OthelloPosition position, int depth) throws IllegalMoveException {
+        if (depth == 0) {
+            return 1;
+        }
+        LinkedList<OthelloAction> moves = position.getMoves();
+        if (moves.isEmpty()) {
+            OthelloPosition passedPosition = position.makeMove(new OthelloAction(0, 0, true));
+            if (passedPosition.getMoves().isEmpty()) {
+                //the game is over
+                return 1;
+            }
+            return perftApi(passedPosition, depth - 1);
+        }
+        long count = 0;
+        for (OthelloAction move : moves) {
+            count += perftApi(position.makeMove(move), depth - 1);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * Class that keeps an OthelloEngine searching while the opponent is thinking. After a move is played, the engine
+ * searches the position it expects after the opponent reply of its principal variation. If the opponent plays this
+ * reply, the search goes on with the real time limit instead of starting over; otherwise it is stopped, and only the
+ * transposition table entries it produced are kept.
+ *
+ * The engine must not be used by another thread between start() and finish().
+ */
+public class Ponderer {
+    private final OthelloEngine engine;
+    private Thread ponderThread;
+    private OthelloPosition ponderedPosition;
+    private volatile OthelloAction ponderedMove;
+
+    public Ponderer(OthelloEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Starts searching, without time limit, the position expected after <code>playedMove</code> in
+     * <code>position</code> and the predicted opponent reply. Does nothing if the reply is unknown or if there is
+     * nothing to choose in the expected position.
+     */
+    public void start(OthelloPosition position, OthelloAction playedMove) {
+        OthelloPosition predictedPosition = engine.predictNextPosition(position, playedMove);
+        if (predictedPosition == null || predictedPosition.getMoveMask() == 0) {
+            return;
+        }
+        ponderedPosition = predictedPosition;
+        ponderedMove = null;
+        //the time limit must be set before the thread starts, so that finish() can always change it
+        engine.startSearch(predictedPosition, Long.MAX_VALUE);
+        ponderThread = new Thread(() -> {
+            try {
+                ponderedMove = engine.search(predictedPosition);
+            } catch (IllegalMoveException exception) {
+                //the predicted position can not be searched, the move will be searched by the caller
+            }
+        }, "ponder");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+    /**
+     * Ends the pondering when the real position to play, <code>position</code>, is known. If it is the pondered one,
+     * the search continues until <code>timeLimitStamp</code> and its move is returned, unless the opening book has a
+     * move for the position: the search is then stopped and the book move returned. Otherwise the search is stopped
+     * and null is returned, as when nothing was pondered.
+     */
+    public OthelloAction finish(OthelloPosition position, long timeLimitStamp) {
+        if (ponderThread == null) {
+            return null;
+        }
+        boolean isPonderHit = ponderedPosition.equals(position);
+        //as for a search that was not pondered, the book move is played instead of the searched one
+        OthelloAction bookMove = isPonderHit ? engine.lookupBook(position) : null;
+        engine.setTimeLimitStamp(isPonderHit && bookMove == null ? timeLimitStamp : 0);
+        try {
+            ponderThread.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        ponderThread = null;
+        ponderedPosition = null;
+        if (bookMove != null) {
+            return bookMove;
+        }
+        return isPonderHit ? ponderedMove : null;
+    }
+}
@@ -0,0 +1,399 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Compact binary records of positions and games, to store the millions of positions of self-play and analysis
+ * instead of their 65 characters strings:
+ * - a position is POSITION_SIZE bytes: the long white discs, the long black discs, and a byte, 1 if white is to move
+ * - a game is its start position, the unsigned byte number of moves, and a byte per move: the bit index of its square
+ *   (see OthelloPosition.toSquare()), or -1 for a pass
+ * A file is the int magic of its content, POSITIONS_MAGIC or GAMES_MAGIC, followed by its records, in big-endian.
+ *
+ * Writer and Reader stream the records through a buffer with NIO channels. MappedPositions reads any position of a
+ * positions file at random, from the memory-mapped file.
+ *
+ * The main method converts files between the binary and the text formats, where a position is its string (see
+ * OthelloPosition.toString()) and a game is the string of its start position followed by its moves as printed by
+ * OthelloAction, separated by spaces, one record per line.
+ *
+ * Usage: java PositionRecords encode positions|games text_file binary_file
+ *        java PositionRecords decode binary_file text_file
+ */
+public class PositionRecords {
+    static final int POSITIONS_MAGIC = 0x4F504F53;
+    static final int GAMES_MAGIC = 0x4F47414D;
+    static final int HEADER_SIZE = 4;
+    static final int POSITION_SIZE = 17;
+
+    /**
+     * Maximum number of moves of a game, passes included, so that its count fits in a byte.
+     */
+    static final int MAX_GAME_MOVES = 255;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public static void main(String[] args) throws IOException, IllegalMoveException {
+        if (args.length == 4 && args[0].equals("encode")) {
+            boolean games = args[1].equals("games");
+            try (BufferedReader in = Files.newBufferedReader(Paths.get(args[2]));
+                 Writer writer = new Writer(Paths.get(args[3]), games ? GAMES_MAGIC : POSITIONS_MAGIC)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    if (games) {
+                        writer.writeGame(parseGame(line));
+                    } else {
+                        writer.writePosition(new OthelloPosition(line.trim()));
+                    }
+                }
+            }
+        } else if (args.length == 3 && args[0].equals("decode")) {
+            try (Reader reader = new Reader(Paths.get(args[1]));
+                 PrintStream out = new PrintStream(Files.newOutputStream(Paths.get(args[2])))) {
+                if (reader.containsGames()) {
+                    Game game;
+                    while ((game = reader.readGame()) != null) {
+                        out.println(formatGame(game));
+                    }
+                } else {
+                    OthelloPosition position;
+                    while ((position = reader.readPosition()) != null) {
+                        out.println(position);
+                    }
+                }
+            }
+        } else {
+            System.err.println("Usage: java PositionRecords encode positions|games text_file binary_file");
+            System.err.println("       java PositionRecords decode binary_file text_file");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the game of a line of the text format.
+     */
+    static Game parseGame(String line) throws IllegalMoveException {
+        String[] fields = line.trim().split("\\s+");
+        OthelloPosition start = new OthelloPosition(fields[0]);
+        int[] moves = new int[fields.length - 1];
+        for (int i = 1; i < fields.length; i++) {
+            OthelloAction move = new OthelloAction(fields[i]);
+            moves[i - 1] = move.isPassMove() ? OthelloPosition.PASS : OthelloPosition.toSquare(move.row, move.column);
+        }
+        return new Game(start, moves);
+    }
+
+    /**
+     * Returns the line of the text format of <code>game</code>.
+     */
+    static String formatGame(Game game) {
+        StringBuilder line = new StringBuilder(65 + 6 * game.moves.length);
+        line.append(game.start);
+        for (int move : game.moves) {
+            line.append(' ');
+            if (move == OthelloPosition.PASS) {
+                line.append("pass");
+            } else {
+                line.append('(').append(OthelloPosition.squareRow(move)).append(',')
+                        .append(OthelloPosition.squareColumn(move)).append(')');
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Returns whether <code>file</code> starts with the magic of a positions file, so that the tools reading positions
+     * also accept text files.
+     */
+    static boolean isPositionsFile(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            DataInputStream data = new DataInputStream(in);
+            return Files.size(file) >= HEADER_SIZE && data.readInt() == POSITIONS_MAGIC;
+        }
+    }
+
+    /**
+     * Puts the record of <code>position</code> in <code>buffer</code>, at its position.
+     */
+    static void putPosition(ByteBuffer buffer, OthelloPosition position) {
+        buffer.putLong(position.whiteDiscs);
+        buffer.putLong(position.blackDiscs);
+        buffer.put((byte) (position.playerToMove ? 1 : 0));
+    }
+
+    /**
+     * Returns the position of the record at the position of <code>buffer</code>.
+     */
+    static OthelloPosition getPosition(ByteBuffer buffer) {
+        long whiteDiscs = buffer.getLong();
+        long blackDiscs = buffer.getLong();
+        return new OthelloPosition(whiteDiscs, blackDiscs, buffer.get() != 0);
+    }
+
+    /**
+     * A game: its start position and its moves, bit indexes of squares or OthelloPosition.PASS.
+     */
+    static class Game {
+        final OthelloPosition start;
+        final int[] moves;
+
+        Game(OthelloPosition start, int[] moves) {
+            if (moves.length > MAX_GAME_MOVES) {
+                throw new IllegalArgumentException(moves.length + " moves, more than " + MAX_GAME_MOVES);
+            }
+            this.start = start;
+            this.moves = moves;
+        }
+
+        /**
+         * Returns the position at the end of the game, checking that all its moves are legal.
+         */
+        OthelloPosition play() throws IllegalMoveException {
+            OthelloPosition position = start.clone();
+            for (int move : moves) {
+                if (move != OthelloPosition.PASS && (position.getMoveMask() & (1L << move)) == 0) {
+                    throw new IllegalMoveException(new OthelloAction(OthelloPosition.squareRow(move),
+                            OthelloPosition.squareColumn(move)));
+                }
+                position.doMove(move);
+            }
+            return position;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) return true;
+            if (!(other instanceof Game)) return false;
+            Game otherGame = (Game) other;
+            return start.equals(otherGame.start) && Arrays.equals(moves, otherGame.moves);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * start.hashCode() + Arrays.hashCode(moves);
+        }
+    }
+
+    /**
+     * Writes the records of a file in sequence, through a buffer. The records are all positions or all games,
+     * depending on the magic of the file.
+     */
+    static class Writer implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final int magic;
+
+        Writer(Path file, int magic) throws IOException {
+            this.magic = magic;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(magic);
+        }
+
+        void writePosition(OthelloPosition position) throws IOException {
+            if (magic != POSITIONS_MAGIC) {
+                throw new IllegalStateException("not a positions file");
+            }
+            ensureRemaining(POSITION_SIZE);
+            putPosition(buffer, position);
+        }
+
+        void writeGame(Game game) throws IOException {
+            if (magic != GAMES_MAGIC) {
+                throw new IllegalStateException("not a games file");
+            }
+            ensureRemaining(POSITION_SIZE + 1 + game.moves.length);
+            putPosition(buffer, game.start);
+            buffer.put((byte) game.moves.length);
+            for (int move : game.moves) {
+                buffer.put((byte) move);
+            }
+        }
+
+        /**
+         * Writes the buffer to the file if it has less than <code>size</code> bytes left.
+         */
+        private void ensureRemaining(int size) throws IOException {
+            if (buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a file in sequence, through a buffer.
+     */
+    static class Reader implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final Path file;
+        private final int magic;
+
+        Reader(Path file) throws IOException {
+            this.file = file;
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            buffer.limit(0);
+            if (!fill(HEADER_SIZE)) {
+                channel.close();
+                throw new IOException(file + " is empty");
+            }
+            magic = buffer.getInt();
+            if (magic != POSITIONS_MAGIC && magic != GAMES_MAGIC) {
+                channel.close();
+                throw new IOException(file + " is not a positions or games file");
+            }
+        }
+
+        boolean containsGames() {
+            return magic == GAMES_MAGIC;
+        }
+
+        /**
+         * Returns the next position of a positions file, or null at its end.
+         */
+        OthelloPosition readPosition() throws IOException {
+            if (magic != POSITIONS_MAGIC) {
+                throw new IllegalStateException("not a positions file");
+            }
+            if (!fill(POSITION_SIZE)) {
+                return null;
+            }
+            return getPosition(buffer);
+        }
+
+        /**
+         * Returns the next game of a games file, or null at its end.
+         */
+        Game readGame() throws IOException {
+            if (magic != GAMES_MAGIC) {
+                throw new IllegalStateException("not a games file");
+            }
+            if (!fill(POSITION_SIZE + 1)) {
+                return null;
+            }
+            OthelloPosition start = getPosition(buffer);
+            int[] moves = new int[buffer.get() & 0xFF];
+            if (!fill(moves.length)) {
+                throw new IOException(file + " is truncated");
+            }
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = buffer.get();
+            }
+            return new Game(start, moves);
+        }
+
+        /**
+         * Reads the file until the buffer has at least <code>size</code> bytes. Returns false if the file ends before
+         * any of them, and throws an IOException if it ends in the middle of them.
+         */
+        private boolean fill(int size) throws IOException {
+            if (buffer.remaining() >= size) {
+                return true;
+            }
+            buffer.compact();
+            while (buffer.position() < size) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            if (buffer.remaining() >= size) {
+                return true;
+            } else if (buffer.remaining() == 0) {
+                return false;
+            }
+            throw new IOException(file + " is truncated");
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Random access to the positions of a positions file, which is memory-mapped so that the positions are only read
+     * from the pages of the file when they are needed. A mapping is limited to 2 GB, so the file is mapped in chunks of
+     * POSITIONS_PER_CHUNK positions.
+     */
+    static class MappedPositions {
+        /**
+         * Number of positions of a mapped chunk, whose size must stay below 2 GB.
+         */
+        static final int POSITIONS_PER_CHUNK = 1 << 24;
+
+        private final MappedByteBuffer[] chunks;
+        private final long size;
+
+        MappedPositions(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long fileSize = channel.size();
+                if (fileSize < HEADER_SIZE || channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).getInt()
+                        != POSITIONS_MAGIC) {
+                    throw new IOException(file + " is not a positions file");
+                }
+                if ((fileSize - HEADER_SIZE) % POSITION_SIZE != 0) {
+                    throw new IOException(file + " is truncated");
+                }
+                size = (fileSize - HEADER_SIZE) / POSITION_SIZE;
+                chunks = new MappedByteBuffer[(int) ((size + POSITIONS_PER_CHUNK - 1) / POSITIONS_PER_CHUNK)];
+                for (int chunk = 0; chunk < chunks.length; chunk++) {
+                    long firstPosition = (long) chunk * POSITIONS_PER_CHUNK;
+                    long chunkPositions = Math.min(POSITIONS_PER_CHUNK, size - firstPosition);
+                    chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            HEADER_SIZE + firstPosition * POSITION_SIZE, chunkPositions * POSITION_SIZE);
+                }
+            }
+        }
+
+        /**
+         * Returns the number of positions of the file.
+         */
+        long size() {
+            return size;
+        }
+
+        /**
+         * Returns the position of index <code>index</code>.
+         */
+        OthelloPosition get(long index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("position " + index + " of " + size);
+            }
+            MappedByteBuffer chunk = chunks[(int) (index / POSITIONS_PER_CHUNK)];
+            int offset = (int) (index % POSITIONS_PER_CHUNK) * POSITION_SIZE;
+            return new OthelloPosition(chunk.getLong(offset), chunk.getLong(offset + 8), chunk.get(offset + 16) != 0);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Fixed set of positions, from the opening to the endgame, used to measure and compare the engine. They come from
+ * random games played from the start position.
+ */
+public class PositionSuite {
+    static final String START = "WEEEEEEEEEEEEEEEEEEEEEEEEEEEOXEEEEEEXOEEEEEEEEEEEEEEEEEEEEEEEEEEE";
+
+    static final String[] OPENING = {
+            START,
+            "BEEEEEEEEEEEEEEEEEEXEEOEEEEEXOEEEEEOOOEEEEEEEOEEEEEEEOEEEEEEEEEEE",
+            "BEEEEEEEEEEEEEEEEEEEXXXEEEOOXOOEEEEOOOEEEEXOEEEEEEEEEEEEEEEEEEEEE",
+            "BEEEEEEEEEEOEXEEEEEEOOOEEEEEXXEEEEEEXXXEEEEXOOOXEEEOEEEEXEEEEEEEE",
+    };
+
+    static final String[] MIDGAME = {
+            "BEEOEEEEEEEEOOXEEOEXEOEEEEOXXOEEEEOOXXEEEXXXXEXEEEOEEEEEEEEEEEEEE",
+            "BEXEXEEEEEEXXOXXEOEEOOXEEOEOOXEOEOOOXOOEEOEXEEEOEEEEEEEEEEEEEEEEE",
+            "BEEEEEEEEEOEEEEXEEEOOEXEEEOXOXEEOOEOXOEOEEEXOXOOEEXXXOOOEEOEXEOEE",
+            "BEXEXEOEEEEXXEOEEEEXXXOOEEEXXOOEOEEXOXOOEOOXXEOEEOOXEEOEEEXXOEEEE",
+    };
+
+    static final String[] ENDGAME = {
+            "BEXOEEOEEEEOOOOEEEEOOOOOEXOXXXOOEOOOXXOOEEEOOOXOXEEEOEXOEEEEEEXOE",
+            "BEEOEEOOEEXOOOOEXEEXOOOXEOOOXXXOOEOOOOOOEEEOXEXEXXXXXXEXEOEOXEEEE",
+            "BEEEXXXEEEEOOXOEEEOOXOOOOEOXXOOEXOXXXOEOEEXXOOXOOXXXXOEXEEOOOOOEX",
+            "BXXOOOOOEOOOOOOOOEOXXXOOEOXOXXOOXOEOOOOOEOOOOXOEEOOOXOEEEEEEOOOEE",
+    };
+
+    /**
+     * Returns all the positions of the suite, from the opening to the endgame.
+     */
+    static String[] all() {
+        String[] positions = new String[OPENING.length + MIDGAME.length + ENDGAME.length];
+        System.arraycopy(OPENING, 0, positions, 0, OPENING.length);
+        System.arraycopy(MIDGAME, 0, positions, OPENING.length, MIDGAME.length);
+        System.arraycopy(ENDGAME, 0, positions, OPENING.length + MIDGAME.length, ENDGAME.length);
+        return positions;
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A move found by a multi-PV search (see OthelloAlgorithm.evaluateMultiPv()) with its value, from the point of view of
+ * white as for the other searches, and its principal variation: the move followed by the moves both players are
+ * expected to play after it, as far as the search knows them.
+ */
+public class PrincipalVariation {
+    private final List<OthelloAction> moves;
+
+    /**
+     * Creates the variation of <code>moves</code>, whose first move holds the value of the variation.
+     */
+    public PrincipalVariation(List<OthelloAction> moves) {
+        if (moves.isEmpty()) {
+            throw new IllegalArgumentException("a principal variation starts with its move");
+        }
+        this.moves = Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * Returns the move of the variation, with its value.
+     */
+    public OthelloAction getMove() {
+        return moves.get(0);
+    }
+
+    public int getValue() {
+        return moves.get(0).getValue();
+    }
+
+    /**
+     * Returns the moves of the variation, starting with its move.
+     */
+    public List<OthelloAction> getMoves() {
+        return moves;
+    }
+
+    /** Returns the value followed by the moves, as printed by OthelloAction. */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder().append(getValue());
+        for (OthelloAction move : moves) {
+            s.append(' ').append(move);
+        }
+        return s.toString();
+    }
+}
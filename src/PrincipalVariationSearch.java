@@ -0,0 +1,12 @@
+/**
+ * Class that implements the Principal Variation Search (NegaScout) variant of AlphaBeta. The first move of each node,
+ * the best one if the move ordering is right, is searched with the full window. The other moves are only searched
+ * with a null window, which proves cheaply that they are not better, and are searched again with the full window
+ * when the null window search fails high.
+ */
+public class PrincipalVariationSearch extends AlphaBeta {
+
+    public PrincipalVariationSearch(long timeLimitStamp) {
+        super(timeLimitStamp, true);
+    }
+}
@@ -0,0 +1,237 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The parameters of the selective search of AlphaBeta (see AlphaBeta.setProbCut()), which prunes the nodes whose value
+ * a shallow search predicts to be outside of the window (Multi-ProbCut, M. Buro). For a game phase, given by the
+ * number of empty cells, and a depth, the value v of a search at this depth is predicted from the value v' of a search
+ * at a shallower depth by the linear regression v = slope * v' + intercept + e, the error e following a normal law of
+ * standard deviation deviation. A node is pruned when the shallow search shows that v is at least beta, or at most
+ * alpha, with a probability of at least the confidence.
+ *
+ * The parameters are fitted by ProbCutCalibration on the values of searches of a set of positions, which it writes in
+ * a binary file:
+ * - header: the ints MAGIC, PHASE_COUNT and the deepest depth checked
+ * - for each phase and each depth from MIN_DEPTH to the deepest one: the int shallow depth, 0 for no check, and the
+ *   floats slope, intercept and deviation, in big-endian
+ * They depend on the evaluator of the searches, so the file must be calibrated again when the evaluator changes.
+ */
+public class ProbCut {
+    /**
+     * File read by Othello and OthelloDaemon if it exists, in the directory they are run from.
+     */
+    static final String DEFAULT_FILE = "othello.probcut";
+
+    /**
+     * Default probability that a pruned node would indeed have been cut by the full search, which can be set with
+     * -Dothello.probCutConfidence=probability.
+     */
+    static final double DEFAULT_CONFIDENCE = Double.parseDouble(System.getProperty("othello.probCutConfidence", "0.9"));
+
+    /**
+     * Shallowest depth checked: below it, the shallow search saves less than it costs.
+     */
+    static final int MIN_DEPTH = 3;
+
+    /**
+     * Number of game phases, each one being EMPTIES_PER_PHASE numbers of empty cells.
+     */
+    static final int PHASE_COUNT = 6;
+    private static final int EMPTIES_PER_PHASE = 10;
+
+    private static final int MAGIC = 0x50524F42;
+
+    /**
+     * Bounds beyond which the values are the ones of finished games, not evaluations: the regressions do not apply.
+     */
+    private static final int MAX_EVALUATION = AlphaBeta.WIN_SCORE / 2;
+
+    private final int maxDepth;
+
+    /**
+     * Parameters of the checks by phase and depth, the shallow depth being 0 where there is no check.
+     */
+    private final int[][] shallowDepths;
+    private final float[][] slopes;
+    private final float[][] intercepts;
+    private final float[][] deviations;
+
+    /**
+     * Number of standard deviations of the error between the predicted value and the bound for a node to be pruned.
+     */
+    private double threshold;
+
+    /**
+     * Creates parameters without any check up to <code>maxDepth</code>, to be set by setCheck().
+     */
+    ProbCut(int maxDepth) {
+        this.maxDepth = maxDepth;
+        shallowDepths = new int[PHASE_COUNT][maxDepth + 1];
+        slopes = new float[PHASE_COUNT][maxDepth + 1];
+        intercepts = new float[PHASE_COUNT][maxDepth + 1];
+        deviations = new float[PHASE_COUNT][maxDepth + 1];
+        setConfidence(DEFAULT_CONFIDENCE);
+    }
+
+    /**
+     * Creates the parameters of <code>in</code>, in the format of the class description.
+     */
+    public ProbCut(InputStream in) throws IOException {
+        this(readMaxDepth(new DataInputStream(in)));
+        DataInputStream data = new DataInputStream(in);
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            for (int depth = MIN_DEPTH; depth <= maxDepth; depth++) {
+                int shallowDepth = data.readInt();
+                float slope = data.readFloat();
+                float intercept = data.readFloat();
+                float deviation = data.readFloat();
+                if (shallowDepth < 0 || shallowDepth >= depth) {
+                    throw new IOException("shallow depth " + shallowDepth + " for depth " + depth);
+                }
+                setCheck(phase, depth, shallowDepth, slope, intercept, deviation);
+            }
+        }
+    }
+
+    private static int readMaxDepth(DataInputStream data) throws IOException {
+        if (data.readInt() != MAGIC || data.readInt() != PHASE_COUNT) {
+            throw new IOException("not a ProbCut file of this version");
+        }
+        int maxDepth = data.readInt();
+        if (maxDepth < MIN_DEPTH || maxDepth >= OthelloPosition.BOARD_SIZE * OthelloPosition.BOARD_SIZE) {
+            throw new IOException("deepest depth " + maxDepth + " out of range");
+        }
+        return maxDepth;
+    }
+
+    /**
+     * Returns the parameters of the file <code>fileName</code>, or null if there is no readable file.
+     */
+    static ProbCut loadIfExists(String fileName) {
+        Path file = Paths.get(fileName);
+        if (!Files.isReadable(file)) {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return new ProbCut(in);
+        } catch (IOException exception) {
+            System.err.println("ProbCut parameters not used: " + exception.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the parameters on <code>out</code>, in the format of the class description.
+     */
+    void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(PHASE_COUNT);
+        data.writeInt(maxDepth);
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            for (int depth = MIN_DEPTH; depth <= maxDepth; depth++) {
+                data.writeInt(shallowDepths[phase][depth]);
+                data.writeFloat(slopes[phase][depth]);
+                data.writeFloat(intercepts[phase][depth]);
+                data.writeFloat(deviations[phase][depth]);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Sets the regression predicting the value of a search of <code>depth</code> plies from the one of
+     * <code>shallowDepth</code> plies in <code>phase</code>. A <code>shallowDepth</code> of 0 removes the check.
+     */
+    void setCheck(int phase, int depth, int shallowDepth, float slope, float intercept, float deviation) {
+        //a decreasing or flat regression does not predict anything
+        if (slope <= 0) {
+            shallowDepth = 0;
+        }
+        shallowDepths[phase][depth] = shallowDepth;
+        slopes[phase][depth] = slope;
+        intercepts[phase][depth] = intercept;
+        deviations[phase][depth] = deviation;
+    }
+
+    /**
+     * Sets the probability, from 0.5 to 1 excluded, that a pruned node would have been cut by the full search. A
+     * higher confidence prunes less and makes fewer mistakes.
+     */
+    public void setConfidence(double confidence) {
+        if (confidence < 0.5 || confidence >= 1) {
+            throw new IllegalArgumentException("confidence " + confidence + " not in [0.5,1)");
+        }
+        threshold = normalQuantile(confidence);
+    }
+
+    /**
+     * Returns the quantile of the standard normal law for the probability <code>p</code> in [0.5,1), with the
+     * rational approximation 26.2.23 of Abramowitz and Stegun, within 4.5e-4.
+     */
+    private static double normalQuantile(double p) {
+        double t = Math.sqrt(-2 * Math.log(1 - p));
+        return t - (2.515517 + 0.802853 * t + 0.010328 * t * t) / (1 + 1.432788 * t + 0.189269 * t * t
+                + 0.001308 * t * t * t);
+    }
+
+    /**
+     * Returns the phase of a position with <code>empties</code> empty cells.
+     */
+    static int phase(int empties) {
+        return Math.min(Math.max(empties - 1, 0) / EMPTIES_PER_PHASE, PHASE_COUNT - 1);
+    }
+
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the depth of the shallow search checking a node of <code>depth</code> plies with <code>empties</code>
+     * empty cells, or 0 if the node is not checked. The nodes reaching the end of the game are never checked, the
+     * regressions being fitted on evaluations.
+     */
+    int shallowDepth(int depth, int empties) {
+        if (depth < MIN_DEPTH || depth > maxDepth || depth >= empties) {
+            return 0;
+        }
+        return shallowDepths[phase(empties)][depth];
+    }
+
+    /**
+     * Returns the bound of the shallow search that predicts a value of at least <code>beta</code> for a node of
+     * <code>depth</code> plies with <code>empties</code> empty cells: if the shallow value is at least this bound, the
+     * node can be pruned. Returns Integer.MAX_VALUE if the node is not checked.
+     */
+    int upperBound(int beta, int depth, int empties) {
+        if (shallowDepth(depth, empties) == 0 || beta <= -MAX_EVALUATION || beta >= MAX_EVALUATION) {
+            return Integer.MAX_VALUE;
+        }
+        int phase = phase(empties);
+        double bound = Math.ceil((beta + threshold * deviations[phase][depth] - intercepts[phase][depth])
+                / slopes[phase][depth]);
+        return bound < MAX_EVALUATION ? (int) bound : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the bound of the shallow search that predicts a value of at most <code>alpha</code> for a node of
+     * <code>depth</code> plies with <code>empties</code> empty cells: if the shallow value is at most this bound, the
+     * node can be pruned. Returns Integer.MIN_VALUE if the node is not checked.
+     */
+    int lowerBound(int alpha, int depth, int empties) {
+        if (shallowDepth(depth, empties) == 0 || alpha <= -MAX_EVALUATION || alpha >= MAX_EVALUATION) {
+            return Integer.MIN_VALUE;
+        }
+        int phase = phase(empties);
+        double bound = Math.floor((alpha - threshold * deviations[phase][depth] - intercepts[phase][depth])
+                / slopes[phase][depth]);
+        return bound > -MAX_EVALUATION ? (int) bound : Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fits the parameters of ProbCut on a set of positions and writes them in a ProbCut file. Every position is searched
+ * by iterative deepening, with the full window, up to the deepest depth checked, and for each checked depth the value
+ * of its search and the one of the shallow search checking it are added to the linear regression of the depth in the
+ * phase of the position. The positions are searched in parallel, each thread with its own search.
+ *
+ * The shallow depth of a depth is about its half, with the same parity so that the player to move at the horizon is
+ * the same: the evaluations of Othello depend a lot on who moves last. A regression is only kept with at least
+ * MIN_SAMPLES positions, the depth being never checked in the phase otherwise.
+ *
+ * The positions should be the ones the engine meets, for instance the positions of self-play games, in a positions
+ * file of PositionRecords or a text file with a position string per line. The evaluator is the one of Othello: the
+ * pattern tables if their file exists, else the BoardEvaluator with the weights file if it exists.
+ *
+ * Usage: java ProbCutCalibration positions_file [max_depth] [threads] [probcut_file]
+ * For instance: java ProbCutCalibration positions.bin 10
+ */
+public class ProbCutCalibration {
+    private static final int DEFAULT_MAX_DEPTH = 10;
+    private static final int MIN_SAMPLES = 50;
+    private static final int TRANSPOSITION_TABLE_MEGABYTES = 16;
+
+    private final int maxDepth;
+    private final OthelloEvaluator evaluator;
+
+    /**
+     * Regressions by phase and depth, updated by all the threads.
+     */
+    private final Regression[][] regressions = new Regression[ProbCut.PHASE_COUNT][];
+
+    /**
+     * The searches of the worker threads, each thread having its own.
+     */
+    private final ThreadLocal<Search> searches;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: java ProbCutCalibration positions_file [max_depth] [threads] [probcut_file]");
+            System.exit(1);
+        }
+        Path input = Paths.get(args[0]);
+        int maxDepth = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_DEPTH;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Path output = Paths.get(args.length > 3 ? args[3] : ProbCut.DEFAULT_FILE);
+
+        OthelloEvaluator evaluator = PatternEvaluator.loadIfExists(PatternEvaluator.DEFAULT_FILE);
+        if (evaluator == null) {
+            evaluator = BoardEvaluator.loadIfExists(BoardEvaluator.DEFAULT_FILE);
+        }
+        if (evaluator == null) {
+            evaluator = new BoardEvaluator();
+        }
+
+        long startTime = System.nanoTime();
+        ProbCutCalibration calibration = new ProbCutCalibration(maxDepth, evaluator);
+        long positionCount = calibration.searchPositions(input, threads);
+        System.out.printf("%d positions searched in %.1f s%n", positionCount, (System.nanoTime() - startTime) / 1e9);
+        ProbCut probCut = calibration.fit();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+            probCut.write(out);
+        }
+        System.out.println("Parameters written in " + output);
+    }
+
+    ProbCutCalibration(int maxDepth, OthelloEvaluator evaluator) {
+        if (maxDepth < ProbCut.MIN_DEPTH) {
+            throw new IllegalArgumentException("max depth " + maxDepth + " below " + ProbCut.MIN_DEPTH);
+        }
+        this.maxDepth = maxDepth;
+        this.evaluator = evaluator;
+        for (int phase = 0; phase < ProbCut.PHASE_COUNT; phase++) {
+            regressions[phase] = new Regression[maxDepth + 1];
+            for (int depth = ProbCut.MIN_DEPTH; depth <= maxDepth; depth++) {
+                regressions[phase][depth] = new Regression();
+            }
+        }
+        searches = ThreadLocal.withInitial(Search::new);
+    }
+
+    /**
+     * Returns the depth of the shallow search checking a search of <code>depth</code> plies.
+     */
+    static int shallowDepth(int depth) {
+        int shallowDepth = depth / 2;
+        if ((depth - shallowDepth) % 2 != 0) {
+            shallowDepth--;
+        }
+        return Math.max(shallowDepth, 1);
+    }
+
+    /**
+     * Searches the positions of <code>input</code> on <code>threads</code> threads, adding their values to the
+     * regressions, and returns their number.
+     */
+    long searchPositions(Path input, int threads) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long positionCount = 0;
+        try {
+            if (PositionRecords.isPositionsFile(input)) {
+                try (PositionRecords.Reader reader = new PositionRecords.Reader(input)) {
+                    OthelloPosition position;
+                    while ((position = reader.readPosition()) != null) {
+                        submit(executor, position);
+                        positionCount++;
+                    }
+                }
+            } else {
+                try (BufferedReader reader = Files.newBufferedReader(input)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (!line.isEmpty()) {
+                            submit(executor, new OthelloPosition(line));
+                            positionCount++;
+                        }
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        return positionCount;
+    }
+
+    private void submit(ExecutorService executor, OthelloPosition position) {
+        executor.execute(() -> {
+            try {
+                addPosition(position);
+            } catch (IllegalMoveException | OutOfTimeException | RuntimeException exception) {
+                System.err.println(position + " not searched: " + exception);
+            }
+        });
+    }
+
+    /**
+     * Searches <code>position</code> at all the depths and adds its values to the regressions of its phase. The
+     * depths reaching the end of the game are not searched, ProbCut never checking them.
+     */
+    private void addPosition(OthelloPosition position) throws IllegalMoveException, OutOfTimeException {
+        int empties = position.countEmpties();
+        int lastDepth = Math.min(maxDepth, empties - 1);
+        if (position.getMoveMask() == 0 || lastDepth < ProbCut.MIN_DEPTH) {
+            return;
+        }
+        int[] values = searches.get().searchValues(position, lastDepth);
+        Regression[] phaseRegressions = regressions[ProbCut.phase(empties)];
+        for (int depth = ProbCut.MIN_DEPTH; depth <= lastDepth; depth++) {
+            int shallowValue = values[shallowDepth(depth)];
+            //the finished games are not predicted by the evaluations
+            if (Math.abs(shallowValue) < AlphaBeta.WIN_SCORE / 2 && Math.abs(values[depth]) < AlphaBeta.WIN_SCORE / 2) {
+                Regression regression = phaseRegressions[depth];
+                synchronized (regression) {
+                    regression.add(shallowValue, values[depth]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the parameters of the regressions, printing them.
+     */
+    ProbCut fit() {
+        ProbCut probCut = new ProbCut(maxDepth);
+        System.out.println("phase depth shallow samples slope intercept deviation correlation");
+        for (int phase = 0; phase < ProbCut.PHASE_COUNT; phase++) {
+            for (int depth = ProbCut.MIN_DEPTH; depth <= maxDepth; depth++) {
+                Regression regression = regressions[phase][depth];
+                if (regression.count < MIN_SAMPLES) {
+                    continue;
+                }
+                int shallowDepth = shallowDepth(depth);
+                probCut.setCheck(phase, depth, shallowDepth, (float) regression.slope(),
+                        (float) regression.intercept(), (float) regression.deviation());
+                System.out.printf("%d %d %d %d %.3f %.2f %.2f %.3f%n", phase, depth, shallowDepth, regression.count,
+                        regression.slope(), regression.intercept(), regression.deviation(),
+                        regression.correlation());
+            }
+        }
+        return probCut;
+    }
+
+    /**
+     * The search of a worker thread. Its transposition table is kept from one position to the next.
+     */
+    private class Search {
+        private final PrincipalVariationSearch moveChooser = new PrincipalVariationSearch(Long.MAX_VALUE);
+        private final TranspositionTable transpositionTable = new TranspositionTable(TRANSPOSITION_TABLE_MEGABYTES);
+
+        Search() {
+            moveChooser.setEvaluator(evaluator);
+            moveChooser.setTranspositionTable(transpositionTable);
+        }
+
+        /**
+         * Returns the values of <code>position</code> by depth, from 1 to <code>lastDepth</code>.
+         */
+        int[] searchValues(OthelloPosition position, int lastDepth) throws IllegalMoveException, OutOfTimeException {
+            transpositionTable.newSearch();
+            int[] values = new int[lastDepth + 1];
+            for (int depth = 1; depth <= lastDepth; depth++) {
+                moveChooser.setSearchDepth(depth);
+                values[depth] = moveChooser.evaluate(position).getValue();
+            }
+            return values;
+        }
+    }
+
+    /**
+     * The least squares regression deep = slope * shallow + intercept, from the sums of its samples.
+     */
+    private static class Regression {
+        private long count;
+        private double shallowSum;
+        private double deepSum;
+        private double shallowSquaresSum;
+        private double deepSquaresSum;
+        private double productsSum;
+
+        void add(int shallow, int deep) {
+            count++;
+            shallowSum += shallow;
+            deepSum += deep;
+            shallowSquaresSum += (double) shallow * shallow;
+            deepSquaresSum += (double) deep * deep;
+            productsSum += (double) shallow * deep;
+        }
+
+        private double shallowVariance() {
+            return shallowSquaresSum / count - square(shallowSum / count);
+        }
+
+        private double deepVariance() {
+            return deepSquaresSum / count - square(deepSum / count);
+        }
+
+        private double covariance() {
+            return productsSum / count - (shallowSum / count) * (deepSum / count);
+        }
+
+        double slope() {
+            double shallowVariance = shallowVariance();
+            return shallowVariance > 0 ? covariance() / shallowVariance : 0;
+        }
+
+        double intercept() {
+            return deepSum / count - slope() * shallowSum / count;
+        }
+
+        /**
+         * Returns the standard deviation of the errors of the regression, corrected for its two parameters.
+         */
+        double deviation() {
+            double errorVariance = Math.max(deepVariance() - slope() * covariance(), 0);
+            return Math.sqrt(errorVariance * count / (count - 2));
+        }
+
+        double correlation() {
+            double variances = shallowVariance() * deepVariance();
+            return variances > 0 ? covariance() / Math.sqrt(variances) : 0;
+        }
+
+        private static double square(double x) {
+            return x * x;
+        }
+    }
+}
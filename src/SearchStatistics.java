@@ -0,0 +1,120 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Counters of the searches made to choose a move, and their report. AlphaBeta only updates the counters when it has
+ * been given a SearchStatistics (see AlphaBeta.setStatistics()), so without statistics a node only costs a null
+ * check.
+ *
+ * The counters are read at the end of each iterative deepening iteration to give, per iteration: the nodes searched,
+ * the leaf evaluations, the beta cutoffs and how many were produced by the first move searched, the effective
+ * branching factor (nodes of the iteration divided by the nodes of the previous one), the time from the start of the
+ * move, and the transposition table hit rate. The report of a move is a JSON line, which also counts the nodes
+ * pruned by the selective search (see ProbCut).
+ *
+ * The counters are not synchronized: an instance must only be updated by one searching thread.
+ */
+public class SearchStatistics {
+    long nodes;
+    long leafEvaluations;
+    long betaCutoffs;
+    long firstMoveCutoffs;
+    long tableProbes;
+    long tableHits;
+    long tableCutoffs;
+    long probCuts;
+
+    private long moveStartNanoseconds;
+    private long solverNodes;
+    private final List<String> iterations = new ArrayList<>();
+    private long iterationStartNodes;
+    private long iterationStartLeafEvaluations;
+    private long iterationStartBetaCutoffs;
+    private long iterationStartFirstMoveCutoffs;
+    private long iterationStartTableProbes;
+    private long iterationStartTableHits;
+    private long previousIterationNodes;
+
+    /**
+     * Resets the counters at the start of the search of a move.
+     */
+    public void startMove() {
+        nodes = 0;
+        leafEvaluations = 0;
+        betaCutoffs = 0;
+        firstMoveCutoffs = 0;
+        tableProbes = 0;
+        tableHits = 0;
+        tableCutoffs = 0;
+        probCuts = 0;
+        solverNodes = 0;
+        iterations.clear();
+        iterationStartNodes = 0;
+        iterationStartLeafEvaluations = 0;
+        iterationStartBetaCutoffs = 0;
+        iterationStartFirstMoveCutoffs = 0;
+        iterationStartTableProbes = 0;
+        iterationStartTableHits = 0;
+        previousIterationNodes = 0;
+        moveStartNanoseconds = System.nanoTime();
+    }
+
+    /**
+     * Records the iteration of <code>depth</code> plies that just ended, <code>completed</code> or stopped by the time
+     * limit, with the counters updated since the previous iteration.
+     */
+    public void endIteration(int depth, boolean completed) {
+        long iterationNodes = nodes - iterationStartNodes;
+        long iterationCutoffs = betaCutoffs - iterationStartBetaCutoffs;
+        long iterationProbes = tableProbes - iterationStartTableProbes;
+        iterations.add(String.format(Locale.ROOT,
+                "{\"depth\":%d,\"completed\":%b,\"timeMs\":%.1f,\"nodes\":%d,\"leaves\":%d,\"betaCutoffs\":%d,"
+                        + "\"firstMoveCutoffRate\":%.3f,\"ebf\":%.2f,\"ttHitRate\":%.3f}",
+                depth, completed, elapsedMilliseconds(), iterationNodes,
+                leafEvaluations - iterationStartLeafEvaluations, iterationCutoffs,
+                ratio(firstMoveCutoffs - iterationStartFirstMoveCutoffs, iterationCutoffs),
+                ratio(iterationNodes, previousIterationNodes),
+                ratio(tableHits - iterationStartTableHits, iterationProbes)));
+        if (completed) {
+            previousIterationNodes = iterationNodes;
+        }
+        iterationStartNodes = nodes;
+        iterationStartLeafEvaluations = leafEvaluations;
+        iterationStartBetaCutoffs = betaCutoffs;
+        iterationStartFirstMoveCutoffs = firstMoveCutoffs;
+        iterationStartTableProbes = tableProbes;
+        iterationStartTableHits = tableHits;
+    }
+
+    /**
+     * Adds the nodes searched by an EndgameSolver for the move.
+     */
+    public void addSolverNodes(long nodeCount) {
+        solverNodes += nodeCount;
+    }
+
+    /**
+     * Prints on <code>out</code> the JSON line of the report of <code>chosenMove</code>, chosen in
+     * <code>position</code>.
+     */
+    public void report(PrintStream out, OthelloPosition position, OthelloAction chosenMove) {
+        double elapsedMilliseconds = elapsedMilliseconds();
+        long totalNodes = nodes + solverNodes;
+        out.println(String.format(Locale.ROOT,
+                "{\"position\":\"%s\",\"move\":\"%s\",\"value\":%d,\"timeMs\":%.1f,\"nodes\":%d,\"solverNodes\":%d,"
+                        + "\"nps\":%.0f,\"ttCutoffs\":%d,\"probCuts\":%d,\"iterations\":[%s]}",
+                position, chosenMove, chosenMove.getValue(), elapsedMilliseconds, nodes, solverNodes,
+                totalNodes / Math.max(elapsedMilliseconds / 1000, 1e-9), tableCutoffs, probCuts,
+                String.join(",", iterations)));
+    }
+
+    private double elapsedMilliseconds() {
+        return (System.nanoTime() - moveStartNanoseconds) / 1e6;
+    }
+
+    private static double ratio(long numerator, long denominator) {
+        return denominator == 0 ? 0 : (double) numerator / denominator;
+    }
+}
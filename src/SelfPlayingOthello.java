@@ -25,17 +25,8 @@ public class SelfPlayingOthello {
 
         //moves is empty: the game is finished
 
-        int white_tokens = 0;
-        int black_tokens = 0;
-
-        for (char[] row : position.board) {
-            for (char column : row) {
-                if (column == 'W')
-                    white_tokens++;
-                else if (column == 'B')
-                    black_tokens++;
-            }
-        }
+        int white_tokens = position.countDiscs(true);
+        int black_tokens = position.countDiscs(false);
 
         System.out.println("White tokens: " + white_tokens);
         System.out.println("Black tokens: " + black_tokens);
@@ -0,0 +1,63 @@
+/**
+ * Move ordering that searches the hash move first, then the other moves by static priority of their square: corners
+ * first, then the other squares, then the C squares and the X squares last. The priorities are the disc scores of
+ * BoardEvaluator.
+ */
+public class StaticMoveOrdering implements MoveOrdering {
+    /**
+     * Key of the hash move, above any other key.
+     */
+    protected static final int HASH_MOVE_KEY = Integer.MAX_VALUE;
+
+    /**
+     * Priority of every square, from BoardEvaluator scores.
+     */
+    protected static final int[] SQUARE_PRIORITIES = new int[64];
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            SQUARE_PRIORITIES[square] = BoardEvaluator.staticSquareScore(OthelloPosition.squareRow(square),
+                    OthelloPosition.squareColumn(square));
+        }
+    }
+
+    /**
+     * Sorting keys of the moves being ordered. A single buffer is enough as moves are ordered one node at a time.
+     */
+    private final int[] keys = new int[64];
+
+    @Override
+    public void newSearch() {
+    }
+
+    @Override
+    public void orderMoves(OthelloPosition position, int[] moves, int moveCount, int hashMove, int ply) {
+        for (int i = 0; i < moveCount; i++) {
+            keys[i] = moves[i] == hashMove ? HASH_MOVE_KEY : moveKey(position, moves[i], ply);
+        }
+        //insertion sort by decreasing key, as there are only a few moves
+        for (int i = 1; i < moveCount; i++) {
+            int key = keys[i];
+            int move = moves[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] < key) {
+                keys[j + 1] = keys[j];
+                moves[j + 1] = moves[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            moves[j + 1] = move;
+        }
+    }
+
+    /**
+     * Returns the sorting key of a move that is not the hash move: the higher, the earlier it is searched.
+     */
+    protected int moveKey(OthelloPosition position, int move, int ply) {
+        return SQUARE_PRIORITIES[move];
+    }
+
+    @Override
+    public void recordCutoff(OthelloPosition position, int move, int ply, int depth) {
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Decides when the iterative deepening of OthelloEngine stops, with two limits:
+ * - the hard limit, at which the running iteration is stopped by an OutOfTimeException and its result lost
+ * - the soft limit, a part of the time of the move after which no new iteration is started without a forecast
+ *
+ * Before each iteration, the time it will take is forecast from the times of the previous ones, and the iteration is
+ * not started if it can not end before the hard limit: the time it would have wasted goes to the EndgameSolver in the
+ * endgame, or to the Ponderer of an OthelloDaemon. The times of alpha beta iterations alternate between odd and even
+ * depths, so the growth of the time is measured between iterations of the same parity when it is known.
+ *
+ * The margins can be set with system properties: -Dothello.safetyMargin=milliseconds (100 by default) kept before the
+ * end of the turn to print the move, and -Dothello.softLimitPercent=percent (50 by default) of the time of the move
+ * for the soft limit.
+ */
+public class TimeManager {
+    /**
+     * Time in milliseconds kept to print the move before the end of the turn.
+     */
+    static final long SAFETY_MARGIN_MILLISECONDS = Long.getLong("othello.safetyMargin", 100);
+
+    /**
+     * Part of the time of the move, in percent, after which no iteration is started if its time can not be forecast.
+     */
+    static final int SOFT_LIMIT_PERCENT = Integer.getInteger("othello.softLimitPercent", 50);
+
+    private volatile long hardLimitStamp;
+    private volatile long softLimitStamp;
+
+    /**
+     * Times in nanoseconds of the last completed iterations, the last one first.
+     */
+    private final long[] iterationNanoseconds = new long[3];
+    private int completedIterations;
+    private long iterationStartNanoseconds;
+
+    /**
+     * Returns the timestamp in milliseconds until which a move can be searched when <code>timeLimit</code> seconds are
+     * given from now. The safety margin is subtracted to avoid going over the limit.
+     */
+    static long computeTimeLimitStamp(int timeLimit) {
+        return System.currentTimeMillis() + ((long) timeLimit) * 1000 - SAFETY_MARGIN_MILLISECONDS;
+    }
+
+    /**
+     * Sets the hard limit of the search, and the soft limit from the time remaining until it. It can be called from
+     * another thread while searching, for instance with 0 to stop the search.
+     */
+    public void setLimitStamp(long hardLimitStamp) {
+        long now = System.currentTimeMillis();
+        this.softLimitStamp = hardLimitStamp <= now ? hardLimitStamp
+                : now + (long) ((hardLimitStamp - now) * (SOFT_LIMIT_PERCENT / 100.0));
+        this.hardLimitStamp = hardLimitStamp;
+    }
+
+    public long getHardLimitStamp() {
+        return hardLimitStamp;
+    }
+
+    /**
+     * Forgets the times of the iterations of the previous move.
+     */
+    public void startMove() {
+        completedIterations = 0;
+    }
+
+    /**
+     * Returns whether the next iteration can be started: it must be forecast to end before the hard limit, or, if
+     * there is no forecast, start before the soft limit.
+     */
+    public boolean canStartIteration() {
+        long now = System.currentTimeMillis();
+        long remainingMilliseconds = hardLimitStamp - now;
+        if (remainingMilliseconds <= 0) {
+            return false;
+        }
+        long forecast = forecastIterationNanoseconds();
+        if (forecast < 0) {
+            return now < softLimitStamp;
+        }
+        return forecast / 1000000 < remainingMilliseconds;
+    }
+
+    public void startIteration() {
+        iterationStartNanoseconds = System.nanoTime();
+    }
+
+    /**
+     * Records the time of the iteration that just completed. Stopped iterations are not recorded.
+     */
+    public void endIteration() {
+        System.arraycopy(iterationNanoseconds, 0, iterationNanoseconds, 1, iterationNanoseconds.length - 1);
+        iterationNanoseconds[0] = System.nanoTime() - iterationStartNanoseconds;
+        completedIterations++;
+    }
+
+    /**
+     * Returns the forecast time in nanoseconds of the next iteration, or -1 if there are not enough completed
+     * iterations to know it. The time of the iteration before the last one is multiplied by the growth of the time
+     * between the last iteration and the one of the same parity before it; with only two iterations, the last time is
+     * multiplied by the growth between the two. The growth is at least 1 as a deeper search is never cheaper.
+     */
+    long forecastIterationNanoseconds() {
+        if (completedIterations < 2) {
+            return -1;
+        }
+        long last = iterationNanoseconds[0];
+        long previous = iterationNanoseconds[1];
+        if (completedIterations < 3) {
+            return (long) (last * growth(last, previous));
+        }
+        return (long) (previous * growth(last, iterationNanoseconds[2]));
+    }
+
+    private static double growth(long time, long previousTime) {
+        return Math.max(1, (double) time / Math.max(1, previousTime));
+    }
+}
@@ -0,0 +1,359 @@
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays a match between two players in this JVM, with one game per thread at the same time, instead of the scripts of
+ * test_code which start a JVM per move. Each opening is played twice, the players swapping colours, so that an
+ * unbalanced opening favours none of them.
+ *
+ * The openings are random walks of a few plies in the OpeningBook, if there is one, among the book moves close to the
+ * best one, and random legal moves outside of the book. The match reports the score of player A, its Elo difference
+ * with player B and, after each game, the log likelihood ratio of a sequential probability ratio test (SPRT) of
+ * [elo0, elo1]: the match stops as soon as the test accepts one of the two hypotheses.
+ *
+ * A player is described by algorithm:evaluator:limit, where:
+ * - algorithm is alphabeta, pvs, or probcut for pvs with the selective search of the default ProbCut file, or
+ *   probcut=file
+ * - evaluator is board, board=weights_file, naive, pattern for the default pattern file, or pattern=file
+ * - limit is a fixed depth, or a time per move with the ms suffix searched by iterative deepening
+ *
+ * Usage: java Tournament player_a player_b [games] [threads] [elo0] [elo1]
+ * For instance: java Tournament pvs:pattern:6 pvs:board:6 2000
+ */
+public class Tournament {
+    private static final int DEFAULT_GAMES = 1000;
+    private static final double DEFAULT_ELO0 = 0;
+    private static final double DEFAULT_ELO1 = 10;
+
+    /**
+     * Probabilities of accepting elo1 when elo0 is true and elo0 when elo1 is true.
+     */
+    private static final double SPRT_ALPHA = 0.05;
+    private static final double SPRT_BETA = 0.05;
+
+    /**
+     * Number of plies of the openings, and maximum score loss of a book move chosen in an opening.
+     */
+    private static final int OPENING_PLIES = 8;
+    private static final int OPENING_MAX_LOSS = 20;
+
+    private static final int TRANSPOSITION_TABLE_MEGABYTES = 4;
+
+    /**
+     * Number of games between two prints of the current results.
+     */
+    private static final int REPORT_INTERVAL = 100;
+
+    private final PlayerConfiguration playerA;
+    private final PlayerConfiguration playerB;
+    private final OpeningBook openingBook;
+    private final double elo0;
+    private final double elo1;
+
+    /**
+     * Results of player A, and the SPRT decision once it is taken. They are updated by all the threads.
+     */
+    private int wins;
+    private int draws;
+    private int losses;
+    private volatile String sprtDecision;
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: java Tournament player_a player_b [games] [threads] [elo0] [elo1]");
+            System.exit(1);
+        }
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_GAMES;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        double elo0 = args.length > 4 ? Double.parseDouble(args[4]) : DEFAULT_ELO0;
+        double elo1 = args.length > 5 ? Double.parseDouble(args[5]) : DEFAULT_ELO1;
+
+        Tournament tournament = new Tournament(new PlayerConfiguration(args[0]), new PlayerConfiguration(args[1]),
+                OpeningBook.openIfExists(OpeningBook.DEFAULT_FILE), elo0, elo1);
+        long startTime = System.currentTimeMillis();
+        tournament.play(games, threads);
+        System.out.println(tournament.summary());
+        System.out.println("Played in " + (System.currentTimeMillis() - startTime) / 1000 + " s");
+    }
+
+    Tournament(PlayerConfiguration playerA, PlayerConfiguration playerB, OpeningBook openingBook,
+               double elo0, double elo1) {
+        this.playerA = playerA;
+        this.playerB = playerB;
+        this.openingBook = openingBook;
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+    }
+
+    /**
+     * Plays up to <code>games</code> games on <code>threads</code> threads, rounded up to an even number so that
+     * every opening is played with both colours. Returns early if the SPRT takes a decision.
+     */
+    void play(int games, int threads) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Random random = new Random(0x70A12L);
+        for (int pair = 0; pair < (games + 1) / 2; pair++) {
+            long openingSeed = random.nextLong();
+            executor.execute(() -> playPair(openingSeed));
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+
+    /**
+     * Plays the opening of <code>openingSeed</code> twice, player A being white then black.
+     */
+    private void playPair(long openingSeed) {
+        if (sprtDecision != null) {
+            return;
+        }
+        try {
+            OthelloPosition opening = randomOpening(new Random(openingSeed));
+            addResult(playGame(opening, playerA.newPlayer(), playerB.newPlayer()));
+            addResult(-playGame(opening, playerB.newPlayer(), playerA.newPlayer()));
+        } catch (IllegalMoveException | OutOfTimeException exception) {
+            //a player is broken: the match can not mean anything
+            exception.printStackTrace();
+            sprtDecision = "stopped by an error";
+        }
+    }
+
+    /**
+     * Returns a position after OPENING_PLIES plies from the start position, chosen in the book if possible.
+     */
+    private OthelloPosition randomOpening(Random random) throws IllegalMoveException {
+        OthelloPosition position = new OthelloPosition(PositionSuite.START);
+        for (int ply = 0; ply < OPENING_PLIES && !position.isGameOver(); ply++) {
+            List<OthelloAction> moves = openingBook != null
+                    ? openingBook.lookupMoves(position, OPENING_MAX_LOSS) : null;
+            if (moves == null || moves.isEmpty()) {
+                moves = position.getMoves();
+            }
+            if (moves.isEmpty()) {
+                position = position.makeMove(new OthelloAction(0, 0, true));
+            } else {
+                position = position.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Plays the game from <code>position</code> until its end, and returns 1 if white wins, -1 if black wins, or 0.
+     */
+    private static int playGame(OthelloPosition position, Player white, Player black)
+            throws IllegalMoveException, OutOfTimeException {
+        while (!position.isGameOver()) {
+            OthelloAction move;
+            if (position.getMoveMask() == 0) {
+                move = new OthelloAction(0, 0, true);
+            } else {
+                move = (position.playerToMove ? white : black).chooseMove(position);
+            }
+            position = position.makeMove(move);
+        }
+        return Integer.signum(position.countDiscs(true) - position.countDiscs(false));
+    }
+
+    /**
+     * Adds the result of a game for player A: 1 for a win, 0 for a draw, -1 for a loss. Prints the results every
+     * REPORT_INTERVAL games, and takes the SPRT decision when the ratio goes out of its bounds.
+     */
+    private synchronized void addResult(int result) {
+        if (sprtDecision != null) {
+            return;
+        }
+        if (result > 0) {
+            wins++;
+        } else if (result < 0) {
+            losses++;
+        } else {
+            draws++;
+        }
+        double llr = logLikelihoodRatio();
+        if (llr >= Math.log((1 - SPRT_BETA) / SPRT_ALPHA)) {
+            sprtDecision = "H1 accepted: elo >= " + elo1;
+        } else if (llr <= Math.log(SPRT_BETA / (1 - SPRT_ALPHA))) {
+            sprtDecision = "H0 accepted: elo <= " + elo0;
+        }
+        if ((wins + draws + losses) % REPORT_INTERVAL == 0) {
+            System.out.println(summary());
+        }
+    }
+
+    /**
+     * Returns the current results: games, score and Elo difference of player A with its 95% interval, and SPRT state.
+     */
+    synchronized String summary() {
+        int games = wins + draws + losses;
+        double score = score();
+        double margin = 1.96 * Math.sqrt(variance() / Math.max(1, games));
+        double llr = logLikelihoodRatio();
+        return String.format(Locale.ROOT, "%s vs %s: %d games +%d =%d -%d, score %.1f%%, elo %+.1f [%+.1f, %+.1f], "
+                        + "LLR %.2f [%.2f, %.2f] %s", playerA, playerB, games, wins, draws, losses, 100 * score,
+                elo(score), elo(score - margin), elo(score + margin), llr,
+                Math.log(SPRT_BETA / (1 - SPRT_ALPHA)), Math.log((1 - SPRT_BETA) / SPRT_ALPHA),
+                sprtDecision != null ? sprtDecision : "");
+    }
+
+    /**
+     * Returns the mean points per game of player A, a draw being worth half a point.
+     */
+    private double score() {
+        int games = wins + draws + losses;
+        return games == 0 ? 0.5 : (wins + draws / 2.0) / games;
+    }
+
+    /**
+     * Returns the variance of the points of a game of player A.
+     */
+    private double variance() {
+        int games = wins + draws + losses;
+        if (games == 0) {
+            return 0;
+        }
+        double score = score();
+        return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score)
+                + losses * score * score) / games;
+    }
+
+    /**
+     * Returns the log likelihood ratio of elo1 against elo0 for the current results, with the normal approximation of
+     * the distribution of the score of the games.
+     */
+    private double logLikelihoodRatio() {
+        double variance = variance();
+        if (variance == 0) {
+            return 0;
+        }
+        double score0 = expectedScore(elo0);
+        double score1 = expectedScore(elo1);
+        return (wins + draws + losses) * (score1 - score0) * (2 * score() - score0 - score1) / (2 * variance);
+    }
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    private static double elo(double score) {
+        double clamped = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+        return -400 * Math.log10(1 / clamped - 1);
+    }
+
+    /**
+     * The settings of a player, parsed from its description. The evaluator and the ProbCut parameters are shared by
+     * all the games, every game creating its own search.
+     */
+    static class PlayerConfiguration {
+        private final String description;
+        private final boolean principalVariationSearch;
+        private final ProbCut probCut;
+        private final OthelloEvaluator evaluator;
+        private final int depth;
+        private final long moveMilliseconds;
+
+        PlayerConfiguration(String description) {
+            this.description = description;
+            String[] fields = description.split(":");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Player not of the form algorithm:evaluator:limit: " + description);
+            }
+            if (fields[0].equals("pvs")) {
+                principalVariationSearch = true;
+                probCut = null;
+            } else if (fields[0].equals("alphabeta")) {
+                principalVariationSearch = false;
+                probCut = null;
+            } else if (fields[0].equals("probcut") || fields[0].startsWith("probcut=")) {
+                String fileName = fields[0].equals("probcut") ? ProbCut.DEFAULT_FILE : fields[0].substring(8);
+                principalVariationSearch = true;
+                probCut = ProbCut.loadIfExists(fileName);
+                if (probCut == null) {
+                    throw new IllegalArgumentException("No ProbCut file " + fileName);
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown algorithm: " + fields[0]);
+            }
+            evaluator = parseEvaluator(fields[1]);
+            if (fields[2].endsWith("ms")) {
+                moveMilliseconds = Long.parseLong(fields[2].substring(0, fields[2].length() - 2));
+                depth = 0;
+            } else {
+                depth = Integer.parseInt(fields[2]);
+                moveMilliseconds = 0;
+            }
+        }
+
+        private static OthelloEvaluator parseEvaluator(String name) {
+            if (name.equals("board")) {
+                return new BoardEvaluator();
+            } else if (name.startsWith("board=")) {
+                BoardEvaluator evaluator = BoardEvaluator.loadIfExists(name.substring(6));
+                if (evaluator == null) {
+                    throw new IllegalArgumentException("No weights file " + name.substring(6));
+                }
+                return evaluator;
+            } else if (name.equals("naive")) {
+                return new NaiveCountingEvaluator();
+            } else if (name.equals("pattern") || name.startsWith("pattern=")) {
+                String fileName = name.equals("pattern") ? PatternEvaluator.DEFAULT_FILE : name.substring(8);
+                PatternEvaluator evaluator = PatternEvaluator.loadIfExists(fileName);
+                if (evaluator == null) {
+                    System.err.println(fileName + " not found, using the default pattern weights");
+                    evaluator = new PatternEvaluator();
+                }
+                return evaluator;
+            }
+            throw new IllegalArgumentException("Unknown evaluator: " + name);
+        }
+
+        Player newPlayer() {
+            AlphaBeta moveChooser = principalVariationSearch
+                    ? new PrincipalVariationSearch(Long.MAX_VALUE) : new AlphaBeta(Long.MAX_VALUE);
+            moveChooser.setEvaluator(evaluator);
+            moveChooser.setProbCut(probCut);
+            moveChooser.setTranspositionTable(new TranspositionTable(TRANSPOSITION_TABLE_MEGABYTES));
+            return new Player(moveChooser, depth, moveMilliseconds);
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    /**
+     * A player of one game: its search keeps its transposition table from one move to the next.
+     */
+    static class Player {
+        private final AlphaBeta moveChooser;
+        private final int depth;
+        private final long moveMilliseconds;
+        private final TimeManager timeManager = new TimeManager();
+
+        Player(AlphaBeta moveChooser, int depth, long moveMilliseconds) {
+            this.moveChooser = moveChooser;
+            this.depth = depth;
+            this.moveMilliseconds = moveMilliseconds;
+        }
+
+        /**
+         * Returns the move to play in <code>position</code>, which must have a legal move.
+         */
+        OthelloAction chooseMove(OthelloPosition position) throws IllegalMoveException, OutOfTimeException {
+            if (moveMilliseconds == 0) {
+                moveChooser.setSearchDepth(depth);
+                return moveChooser.evaluate(position);
+            }
+            long timeLimitStamp = System.currentTimeMillis() + moveMilliseconds;
+            timeManager.setLimitStamp(timeLimitStamp);
+            moveChooser.setTimeLimitStamp(timeLimitStamp);
+            return OthelloEngine.iterativeDeepening(moveChooser, timeManager, position, position.countEmpties(), null)
+                    .move;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table that stores the results of AlphaBeta searches, indexed by the Zobrist hash of the searched
+ * position. It is meant to live during a whole iterative deepening search so that deeper iterations reuse the cutoffs
+ * and best moves of the previous ones.
+ *
+ * An entry is packed in a single long, so that probing and storing do not allocate anything:
+ * - bits 0 to 31: the score
+ * - bits 32 to 39: the depth of the search that produced the score
+ * - bits 40 to 41: the bound type (EXACT, LOWER_BOUND or UPPER_BOUND)
+ * - bits 42 to 48: the bit index of the best move plus one, 0 if there is none
+ * - bits 49 to 56: the generation (see newSearch()) of the entry
+ * A packed entry is never 0 because the bound type is never 0, so 0 means that nothing was found.
+ *
+ * The table can be shared by several searching threads without any lock: the key array stores the hash xor the
+ * packed entry, so an entry half written by another thread does not match its hash and is simply ignored.
+ */
+public class TranspositionTable {
+    /**
+     * Bound types: the score is exact, at least the real score (fail high) or at most the real score (fail low).
+     */
+    static final int EXACT = 1;
+    static final int LOWER_BOUND = 2;
+    static final int UPPER_BOUND = 3;
+
+    /**
+     * Best move value of an entry without move.
+     */
+    static final int NO_MOVE = -1;
+
+    /**
+     * Size in bytes of an entry: the key and the packed data.
+     */
+    private static final int ENTRY_SIZE = 16;
+
+    /**
+     * Policies deciding if a new result overwrites the entry already stored in its slot.
+     */
+    public enum ReplacementPolicy {
+        /** The newest result always replaces the stored one. */
+        ALWAYS,
+        /**
+         * The stored entry is only replaced by a search at least as deep, unless it is about the same position or
+         * comes from a previous search (an older generation).
+         */
+        DEPTH_PREFERRED
+    }
+
+    private final long[] keys;
+    private final long[] entries;
+    private final int indexMask;
+    private final ReplacementPolicy replacementPolicy;
+    private int generation;
+
+    /**
+     * Creates a table using at most <code>sizeInMegabytes</code> megabytes. The number of entries is rounded down to
+     * a power of two so that the slot of a hash is found with a mask.
+     */
+    public TranspositionTable(int sizeInMegabytes, ReplacementPolicy replacementPolicy) {
+        long entryNumber = Long.highestOneBit(Math.max(1, ((long) sizeInMegabytes << 20) / ENTRY_SIZE));
+        entryNumber = Math.min(entryNumber, 1 << 30);
+        keys = new long[(int) entryNumber];
+        entries = new long[(int) entryNumber];
+        indexMask = (int) entryNumber - 1;
+        this.replacementPolicy = replacementPolicy;
+    }
+
+    /**
+     * Creates a table of <code>sizeInMegabytes</code> megabytes with the DEPTH_PREFERRED replacement policy.
+     */
+    public TranspositionTable(int sizeInMegabytes) {
+        this(sizeInMegabytes, ReplacementPolicy.DEPTH_PREFERRED);
+    }
+
+    /**
+     * Starts a new generation, to call once per move played: the entries of the previous moves are kept, but are
+     * replaced first by the DEPTH_PREFERRED policy.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(entries, 0);
+    }
+
+    /**
+     * Returns the packed entry stored for <code>hash</code>, or 0 if there is none.
+     */
+    long probe(long hash) {
+        int index = (int) hash & indexMask;
+        long entry = entries[index];
+        if ((keys[index] ^ entry) == hash) {
+            return entry;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of a search of <code>depth</code> plies on the position of hash <code>hash</code>. Depths
+     * above 255, reached when the iterative deepening goes past the end of the game, are stored as 255.
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param bestMove bit index of the best move, or NO_MOVE to keep the move already stored for this position
+     */
+    void store(long hash, int depth, int bound, int score, int bestMove) {
+        int index = (int) hash & indexMask;
+        long storedEntry = entries[index];
+        depth = Math.min(depth, 0xFF);
+        boolean samePosition = (keys[index] ^ storedEntry) == hash;
+
+        if (replacementPolicy == ReplacementPolicy.DEPTH_PREFERRED && storedEntry != 0 && !samePosition
+                && generationOf(storedEntry) == generation && depthOf(storedEntry) > depth) {
+            return;
+        }
+        if (bestMove == NO_MOVE && samePosition && storedEntry != 0) {
+            bestMove = moveOf(storedEntry);
+        }
+        long entry = (score & 0xFFFFFFFFL)
+                | ((long) depth << 32)
+                | ((long) bound << 40)
+                | ((long) (bestMove + 1) << 42)
+                | ((long) generation << 49);
+        keys[index] = hash ^ entry;
+        entries[index] = entry;
+    }
+
+    /**
+     * Returns the score of a packed entry.
+     */
+    static int scoreOf(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Returns the search depth of a packed entry.
+     */
+    static int depthOf(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    /**
+     * Returns the bound type of a packed entry.
+     */
+    static int boundOf(long entry) {
+        return (int) (entry >>> 40) & 0x3;
+    }
+
+    /**
+     * Returns the bit index of the best move of a packed entry, or NO_MOVE.
+     */
+    static int moveOf(long entry) {
+        return ((int) (entry >>> 42) & 0x7F) - 1;
+    }
+
+    private static int generationOf(long entry) {
+        return (int) (entry >>> 49) & 0xFF;
+    }
+}